@@ -28,9 +28,60 @@ public @interface Table
 
     public static final String DEFAULT_ID_NAME = "Id";
 
+    public enum CachePolicy
+    {
+        /**
+         * Entities share the cache budget set by the configuration with the other tables.
+         */
+        DEFAULT,
+        /**
+         * Entities are never kept in the entity cache.
+         */
+        NONE,
+        /**
+         * Entities are kept in a least recently used cache of their own, limited to
+         * {@link #cacheSize()} entities.
+         */
+        LRU,
+        /**
+         * Entities are softly referenced and released when the VM runs low on memory, limited
+         * to {@link #cacheSize()} entities if it is greater than zero.
+         */
+        SOFT,
+        /**
+         * Entities stay in memory until the cache is cleared, meant for small reference tables.
+         */
+        PINNED
+    }
+
     String name();
 
     String db() default "";
 
     String id() default DEFAULT_ID_NAME;
+
+    CachePolicy cachePolicy() default CachePolicy.DEFAULT;
+
+    /*
+     * Capacity in entities for the LRU and SOFT cache policies.
+     *
+     * Example:
+     *
+     * @Table(name = "Log", cachePolicy = CachePolicy.LRU, cacheSize = 64)
+     * public class Log extends Model {
+     * }
+     */
+    int cacheSize() default 0;
+
+    /*
+     * Keeps the column values as they were loaded or saved, so saving an entity only writes the
+     * columns that changed since and skips the write when none did.
+     *
+     * Example:
+     *
+     * @Table(name = "Document", trackChanges = true)
+     * public class Document extends Model {
+     * }
+     */
+    boolean trackChanges() default false;
 }
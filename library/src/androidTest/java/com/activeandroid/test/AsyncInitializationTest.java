@@ -0,0 +1,85 @@
+package com.activeandroid.test;
+
+import android.test.AndroidTestCase;
+
+import com.activeandroid.sebbia.ActiveAndroid;
+import com.activeandroid.sebbia.Cache;
+import com.activeandroid.sebbia.Configuration;
+
+import java.util.Date;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncInitializationTest extends AndroidTestCase
+{
+    private static final String DATABASE = "AsyncInitializationTest";
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        ActiveAndroid.dispose();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        ActiveAndroid.dispose();
+        super.tearDown();
+    }
+
+    public void testAccessWaitsForInitialization()
+    {
+        ActiveAndroid.initializeAsync(createConfiguration());
+
+        // Blocks until the background initialization is done instead of failing.
+        assertNotNull(Cache.getTableInfo(MockModel.class));
+        assertNotNull(Cache.openDatabase(DATABASE));
+        assertTrue(Cache.isInitialized());
+    }
+
+    public void testSerializerLookupWaitsForInitialization()
+    {
+        ActiveAndroid.initializeAsync(createConfiguration());
+
+        assertNotNull(Cache.getParserForType(Date.class));
+        assertTrue(Cache.isInitialized());
+    }
+
+    public void testFutureCompletes() throws Exception
+    {
+        Future<Void> initialization = ActiveAndroid.initializeAsync(createConfiguration());
+        initialization.get();
+
+        assertTrue(initialization.isDone());
+        assertTrue(Cache.isInitialized());
+        assertSame(initialization, ActiveAndroid.initializeAsync(createConfiguration()));
+    }
+
+    public void testCallerExecutor() throws Exception
+    {
+        final AtomicInteger executed = new AtomicInteger();
+        Executor executor = new Executor()
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                executed.incrementAndGet();
+                new Thread(command).start();
+            }
+        };
+
+        ActiveAndroid.initializeAsync(createConfiguration(), executor, null).get();
+        assertEquals(1, executed.get());
+        assertTrue(Cache.isInitialized());
+    }
+
+    private Configuration createConfiguration()
+    {
+        return new Configuration.Builder(getContext())
+                .setDatabaseName(DATABASE)
+                .addModelClasses(MockModel.class)
+                .create();
+    }
+}
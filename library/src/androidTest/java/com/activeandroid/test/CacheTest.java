@@ -1,18 +1,24 @@
 package com.activeandroid.test;
 
 import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import android.test.AndroidTestCase;
 
 import com.activeandroid.sebbia.ActiveAndroid;
 import com.activeandroid.sebbia.Cache;
+import com.activeandroid.sebbia.CacheStatistics;
 import com.activeandroid.sebbia.Configuration;
 import com.activeandroid.sebbia.Model;
 import com.activeandroid.sebbia.TableInfo;
+import com.activeandroid.sebbia.TableStatistics;
 import com.activeandroid.sebbia.annotation.Table;
+import com.activeandroid.sebbia.annotation.Table.CachePolicy;
 
 public class CacheTest extends AndroidTestCase
 {
+    private static final int CACHE_SIZE = 10;
 
     @Override
     protected void setUp()
@@ -24,6 +30,13 @@ public class CacheTest extends AndroidTestCase
         ActiveAndroid.initialize(conf, true);
     }
 
+    @Override
+    protected void tearDown() throws Exception
+    {
+        ActiveAndroid.dispose();
+        super.tearDown();
+    }
+
     public void testGetTableInfos()
     {
         assertNotNull(Cache.getContext());
@@ -43,13 +56,262 @@ public class CacheTest extends AndroidTestCase
         }
     }
 
+    public void testLazyInitialization()
+    {
+        ActiveAndroid.dispose();
+        Configuration conf = new Configuration.Builder(getContext())
+                .setDatabaseName("CacheTest")
+                .setLazyInitialization(true)
+                .addModelClasses(CacheTestModel.class, CacheTestModel2.class)
+                .create();
+        ActiveAndroid.initialize(conf, true);
+
+        try
+        {
+            TableInfo tableInfo = Cache.getTableInfo(CacheTestModel.class);
+            assertNotNull(tableInfo);
+            assertSame(tableInfo, Cache.getTableInfo(CacheTestModel.class));
+
+            // Schema creation needs every table, not only the ones used so far.
+            assertEquals(2, Cache.getTableInfos().size());
+        }
+        finally
+        {
+            ActiveAndroid.dispose();
+        }
+    }
+
+    public void testNewInstance() throws Exception
+    {
+        // The model has no public constructor, only the generated factory can create it.
+        Model model = Cache.newInstance(CacheTestModel.class);
+        assertTrue(model instanceof CacheTestModel);
+        assertNotSame(model, Cache.newInstance(CacheTestModel.class));
+    }
+
+    /**
+     * Threads adding and reading entities of the same table at once see every entity they
+     * added, and all of them see the same instances.
+     */
+    public void testConcurrentAccess() throws InterruptedException
+    {
+        final int threads  = 4;
+        final int entities = 250;
+        initialize(threads * entities);
+
+        final CountDownLatch start  = new CountDownLatch(1);
+        final CountDownLatch done   = new CountDownLatch(threads);
+        final AtomicInteger  misses = new AtomicInteger();
+        for (int t = 0; t < threads; t++)
+        {
+            final int first = t * entities;
+            new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for (int i = first; i < first + entities; i++)
+                        {
+                            Cache.addEntity(CacheTestModel.withId(new CacheTestModel(), i));
+                        }
+                        for (int i = 0; i < threads * entities; i++)
+                        {
+                            Model entity = Cache.getEntity(CacheTestModel.class, i);
+                            if (i >= first && i < first + entities && entity == null)
+                            {
+                                misses.incrementAndGet();
+                            }
+                        }
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        done.await();
+
+        assertEquals(0, misses.get());
+        for (int i = 0; i < threads * entities; i++)
+        {
+            Model entity = Cache.getEntity(CacheTestModel.class, i);
+            assertNotNull(entity);
+            assertSame(entity, Cache.getEntity(CacheTestModel.class, i));
+        }
+    }
+
+    public void testTableInfoPolicy()
+    {
+        initialize(CACHE_SIZE);
+        assertEquals(CachePolicy.DEFAULT, Cache.getTableInfo(CacheTestModel.class).getCachePolicy());
+        assertEquals(CachePolicy.LRU, Cache.getTableInfo(LruModel.class).getCachePolicy());
+        assertEquals(3, Cache.getTableInfo(LruModel.class).getCacheSize());
+    }
+
+    public void testNoneIsNotCached()
+    {
+        initialize(CACHE_SIZE);
+        Cache.addEntity(CacheTestModel.withId(new UncachedModel(), 1));
+        assertNull(Cache.getEntity(UncachedModel.class, 1));
+    }
+
+    public void testLruIsBoundedByItsOwnSize()
+    {
+        initialize(CACHE_SIZE);
+        for (int i = 0; i < CACHE_SIZE; i++)
+        {
+            Cache.addEntity(CacheTestModel.withId(new LruModel(), i));
+        }
+
+        int cached = 0;
+        for (int i = 0; i < CACHE_SIZE; i++)
+        {
+            if (Cache.getEntity(LruModel.class, i) != null)
+            {
+                cached++;
+            }
+        }
+        assertEquals(3, cached);
+    }
+
+    public void testPinnedSurvivesSharedEviction()
+    {
+        initialize(CACHE_SIZE);
+        for (int i = 0; i < CACHE_SIZE; i++)
+        {
+            Cache.addEntity(CacheTestModel.withId(new PinnedModel(), i));
+        }
+        for (int i = 0; i < CACHE_SIZE * 2; i++)
+        {
+            Cache.addEntity(CacheTestModel.withId(new CacheTestModel(), i));
+        }
+
+        for (int i = 0; i < CACHE_SIZE; i++)
+        {
+            assertNotNull(Cache.getEntity(PinnedModel.class, i));
+        }
+
+        Cache.clear();
+        assertNull(Cache.getEntity(PinnedModel.class, 0));
+    }
+
+    public void testDatabasesArePartitioned()
+    {
+        initialize(CACHE_SIZE);
+        CacheTestModel first = CacheTestModel.withId(new CacheTestModel(), 5);
+        CacheTestModel second = CacheTestModel.withId(new CacheTestModel(), 5);
+        Cache.addEntity("first.db", first);
+        Cache.addEntity("second.db", second);
+
+        assertSame(first, Cache.getEntity("first.db", CacheTestModel.class, 5));
+        assertSame(second, Cache.getEntity("second.db", CacheTestModel.class, 5));
+
+        // Filling one database does not evict the entities of another.
+        for (int i = 0; i < CACHE_SIZE * 2; i++)
+        {
+            Cache.addEntity("second.db", CacheTestModel.withId(new CacheTestModel(), 100 + i));
+        }
+        assertSame(first, Cache.getEntity("first.db", CacheTestModel.class, 5));
+
+        ActiveAndroid.clearCache("first.db");
+        assertNull(Cache.getEntity("first.db", CacheTestModel.class, 5));
+    }
+
+    public void testStatistics()
+    {
+        initialize(CACHE_SIZE);
+        for (int i = 0; i < CACHE_SIZE + 2; i++)
+        {
+            Cache.addEntity(CacheTestModel.withId(new CacheTestModel(), i));
+        }
+
+        int hits = 0;
+        for (int i = 0; i < CACHE_SIZE + 2; i++)
+        {
+            if (Cache.getEntity(CacheTestModel.class, i) != null)
+            {
+                hits++;
+            }
+        }
+
+        CacheStatistics statistics = ActiveAndroid.getCacheStatistics();
+        TableStatistics table = statistics.getTable(CacheTestModel.class);
+        assertNotNull(table);
+        assertEquals(CACHE_SIZE + 2, table.getPuts());
+        assertEquals(2, table.getEvictions());
+        assertEquals(hits, table.getHits());
+        assertEquals(CACHE_SIZE + 2 - hits, table.getMisses());
+        assertEquals(CACHE_SIZE, table.getSize());
+        assertEquals(CACHE_SIZE, statistics.getSharedWeight());
+    }
+
+    public void testResetStatistics()
+    {
+        initialize(CACHE_SIZE);
+        Cache.addEntity(CacheTestModel.withId(new CacheTestModel(), 1));
+        Cache.getEntity(CacheTestModel.class, 1);
+        Cache.getEntity(CacheTestModel.class, 2);
+
+        ActiveAndroid.resetCacheStatistics();
+
+        TableStatistics table = ActiveAndroid.getCacheStatistics().getTable(CacheTestModel.class);
+        assertEquals(0, table.getHits());
+        assertEquals(0, table.getMisses());
+        assertEquals(0, table.getPuts());
+        // Occupancy is not a counter and survives the reset.
+        assertEquals(1, table.getSize());
+    }
+
+    /**
+     * Starts over with a bounded entity cache and the models with their own cache policies.
+     */
+    private void initialize(int cacheSize)
+    {
+        ActiveAndroid.dispose();
+        Configuration conf = new Configuration.Builder(getContext())
+                .setDatabaseName("CacheTest")
+                .setCacheSize(cacheSize)
+                .addModelClasses(CacheTestModel.class, CacheTestModel2.class, UncachedModel.class, LruModel.class, PinnedModel.class)
+                .create();
+        ActiveAndroid.initialize(conf, true);
+    }
+
     @Table(name = "CacheTestModel")
     static class CacheTestModel extends Model
     {
+        static <T extends CacheTestModel> T withId(T model, long id)
+        {
+            model.setModelId(id);
+            return model;
+        }
     }
 
     @Table(name = "CacheTestModel2")
     static class CacheTestModel2 extends Model
     {
     }
+
+    @Table(name = "UncachedModel", cachePolicy = CachePolicy.NONE)
+    static class UncachedModel extends CacheTestModel
+    {
+    }
+
+    @Table(name = "LruModel", cachePolicy = CachePolicy.LRU, cacheSize = 3)
+    static class LruModel extends CacheTestModel
+    {
+    }
+
+    @Table(name = "PinnedModel", cachePolicy = CachePolicy.PINNED)
+    static class PinnedModel extends CacheTestModel
+    {
+    }
 }
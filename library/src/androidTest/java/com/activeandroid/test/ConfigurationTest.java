@@ -17,6 +17,7 @@ public class ConfigurationTest extends AndroidTestCase
         Configuration conf = new Configuration.Builder(getContext()).create();
         assertNotNull(conf.getContext());
         assertEquals(1024, conf.getCacheSize());
+        assertEquals(0, conf.getCacheMemorySize());
         assertEquals("Application.db", conf.getDatabaseName());
         assertEquals(1, conf.getDatabaseVersion());
         assertNull(conf.getModelClasses());
@@ -35,6 +36,14 @@ public class ConfigurationTest extends AndroidTestCase
         assertTrue(conf.isValid());
     }
 
+    public void testCreateConfigurationWithCacheMemorySize()
+    {
+        Configuration conf = new Configuration.Builder(getContext())
+                .setCacheMemorySize(4 * 1024 * 1024)
+                .create();
+        assertEquals(4 * 1024 * 1024, conf.getCacheMemorySize());
+    }
+
     @Table(name = "ConfigurationTestModel")
     static class ConfigurationTestModel extends Model
     {
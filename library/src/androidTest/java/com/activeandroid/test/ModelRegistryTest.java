@@ -0,0 +1,37 @@
+package com.activeandroid.test;
+
+import android.test.AndroidTestCase;
+
+import com.activeandroid.sebbia.ActiveAndroid;
+import com.activeandroid.sebbia.Cache;
+import com.activeandroid.sebbia.Configuration;
+import com.activeandroid.sebbia.internal.ModelRegistry;
+
+public class ModelRegistryTest extends AndroidTestCase
+{
+    @Override
+    protected void tearDown() throws Exception
+    {
+        ActiveAndroid.dispose();
+        super.tearDown();
+    }
+
+    public void testRegistryIsGenerated() throws Exception
+    {
+        ModelRegistry registry = (ModelRegistry) Class.forName(ModelRegistry.DEFAULT_CLASS_NAME).newInstance();
+
+        assertTrue(registry.getModelClasses().contains(MockModel.class));
+        assertNotNull(registry.createFiller(MockModel.class));
+    }
+
+    public void testInitializeFromRegistry()
+    {
+        // Without model classes the configuration falls back to the generated registry.
+        Configuration conf = new Configuration.Builder(getContext())
+                .setDatabaseName("ModelRegistryTest")
+                .create();
+        ActiveAndroid.initialize(conf, true);
+
+        assertNotNull(Cache.getTableInfo(MockModel.class));
+    }
+}
@@ -16,15 +16,26 @@
 
 package com.activeandroid.test;
 
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
 import com.activeandroid.sebbia.Cache;
 import com.activeandroid.sebbia.Model;
 import com.activeandroid.sebbia.TableInfo;
 import com.activeandroid.sebbia.annotation.Column;
 import com.activeandroid.sebbia.annotation.Table;
+import com.activeandroid.sebbia.annotation.Table.CachePolicy;
+import com.activeandroid.sebbia.internal.ColumnPlan;
+import com.activeandroid.sebbia.model.Ref;
+import com.activeandroid.sebbia.query.From;
+import com.activeandroid.sebbia.query.Keyset;
+import com.activeandroid.sebbia.query.ModelIterator;
 import com.activeandroid.sebbia.query.Select;
+import com.activeandroid.sebbia.util.SQLiteUtils;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
@@ -247,6 +258,553 @@ public class ModelTest extends ActiveAndroidTestCase
 
     }
 
+    /**
+     * Existing rows are updated through the compiled update statement.
+     */
+    public void testUpdate()
+    {
+        MockModel model = new MockModel();
+        model.intField = 1;
+        model.dateField = new Date();
+        model.save("test");
+
+        model.intField = 2;
+        model.dateField = null;
+        model.save("test");
+
+        MockModel other = new MockModel();
+        other.save("test");
+        other.intField = 3;
+        Model.saveMultiple("test", Arrays.asList(model, other));
+
+        Cache.clear();
+        MockModel loaded = new Select().from(MockModel.class).where("Id = ?", model.getId()).executeSingle("test");
+        assertEquals(2, loaded.intField);
+        assertNull(loaded.dateField);
+        loaded = new Select().from(MockModel.class).where("Id = ?", other.getId()).executeSingle("test");
+        assertEquals(3, loaded.intField);
+    }
+
+    /**
+     * Batches larger than a chunk yield between chunks, a batch inside an open
+     * transaction is rolled back with it.
+     */
+    public void testSaveAndDeleteMultiple()
+    {
+        List<MockModel> models = new ArrayList<MockModel>();
+        for (int i = 0; i < Cache.getSaveChunkSize() * 2 + 1; i++)
+        {
+            MockModel model = new MockModel();
+            model.intField = i;
+            models.add(model);
+        }
+        Model.saveMultiple("test", models);
+        assertEquals(models.size(), new Select().from(MockModel.class).count("test"));
+
+        SQLiteDatabase db = Cache.openDatabase("test");
+        db.beginTransaction();
+        try
+        {
+            Model.deleteMultiple("test", models);
+            assertTrue(db.inTransaction());
+        }
+        finally
+        {
+            db.endTransaction();
+        }
+        assertEquals(models.size(), new Select().from(MockModel.class).count("test"));
+
+        Model.deleteMultiple("test", models);
+        assertEquals(0, new Select().from(MockModel.class).count("test"));
+        assertTrue(SQLiteUtils.createDeleteStatement(Cache.getTableInfo(MockModel.class)).endsWith(" WHERE \"Id\" = ?"));
+    }
+
+    /**
+     * New entities inserted several rows per statement get the ids of their own rows.
+     */
+    public void testBulkInsertIds()
+    {
+        TableInfo tableInfo = Cache.getTableInfo(MockModel.class);
+        List<MockModel> models = new ArrayList<MockModel>();
+        for (int i = 0; i < tableInfo.getBulkInsertRows() + 3; i++)
+        {
+            MockModel model = new MockModel();
+            model.intField = i;
+            models.add(model);
+        }
+        Model.saveMultiple("test", models);
+
+        Cache.clear();
+        for (MockModel model : models)
+        {
+            MockModel loaded = new Select().from(MockModel.class).where("Id = ?", model.getId()).executeSingle("test");
+            assertEquals(model.intField, loaded.intField);
+        }
+        assertTrue(SQLiteUtils.createInsertStatement("INSERT INTO ", tableInfo, 2).endsWith("(?, ?, ?, ?, ?), (?, ?, ?, ?, ?)"));
+        if (tableInfo.getBulkInsertRows() > 1)
+        {
+            assertEquals(6, (int) tableInfo.getColumnIndexes(1).get("Id"));
+        }
+    }
+
+    /**
+     * A table with only the id column stays below the row limit of a VALUES clause.
+     */
+    public void testBulkInsertRowLimit()
+    {
+        TableInfo tableInfo = Cache.getTableInfo(AnotherMockModel.class);
+        assertTrue(tableInfo.getBulkInsertRows() <= SQLiteUtils.MAX_INSERT_ROWS);
+
+        int saved = new Select().from(AnotherMockModel.class).count("test");
+        List<AnotherMockModel> models = new ArrayList<AnotherMockModel>();
+        for (int i = 0; i < SQLiteUtils.MAX_VARIABLE_NUMBER + 1; i++)
+        {
+            models.add(new AnotherMockModel());
+        }
+        Model.saveMultiple("test", models);
+        assertEquals(saved + models.size(), new Select().from(AnotherMockModel.class).count("test"));
+    }
+
+    /**
+     * Tables tracking changes only write the columns that changed, a column
+     * changed by someone else is left alone.
+     */
+    public void testTrackChanges()
+    {
+        TrackedModel model = new TrackedModel();
+        model.name = "first";
+        model.visits = 1;
+        model.save("test");
+
+        SQLiteUtils.execSql("test", "UPDATE TrackedModel SET visits = 5 WHERE Id = " + model.getId());
+
+        // Unchanged, nothing is written.
+        model.save("test");
+        model.name = "second";
+        model.save("test");
+
+        Cache.clear();
+        TrackedModel loaded = new Select().from(TrackedModel.class).where("Id = ?", model.getId()).executeSingle("test");
+        assertEquals("second", loaded.name);
+        assertEquals(5, loaded.visits);
+    }
+
+    /**
+     * Upserts update the row with the same unique key and take over its id.
+     */
+    public void testUpsert()
+    {
+        UpsertModel first = new UpsertModel();
+        first.code = "a";
+        first.value = 1;
+        first.upsert("test");
+
+        UpsertModel second = new UpsertModel();
+        second.code = "a";
+        second.value = 2;
+        UpsertModel third = new UpsertModel();
+        third.code = "b";
+        third.value = 3;
+        Model.upsertMultiple("test", Arrays.asList(second, third));
+
+        assertEquals(first.getId(), second.getId());
+        assertFalse(first.getId().equals(third.getId()));
+        assertEquals(2, new Select().from(UpsertModel.class).count("test"));
+        assertSame(third, Cache.getEntity("test", UpsertModel.class, third.getId()));
+
+        Cache.clear();
+        UpsertModel loaded = new Select().from(UpsertModel.class).where("code = ?", "a").executeSingle("test");
+        assertEquals(2, loaded.value);
+        assertEquals(first.getId(), loaded.getId());
+    }
+
+    /**
+     * A saved entity without a key is written to its own row instead of a new one.
+     */
+    public void testUpsertNullKey()
+    {
+        UpsertModel model = new UpsertModel();
+        model.value = 1;
+        model.upsert("test");
+        Long id = model.getId();
+
+        model.value = 2;
+        model.upsert("test");
+        assertEquals(id, model.getId());
+        assertEquals(1, new Select().from(UpsertModel.class).count("test"));
+
+        Cache.clear();
+        UpsertModel loaded = new Select().from(UpsertModel.class).where("Id = ?", id).executeSingle("test");
+        assertEquals(2, loaded.value);
+    }
+
+    /**
+     * A saved entity whose key changed keeps its row.
+     */
+    public void testUpsertChangedKey()
+    {
+        UpsertModel model = new UpsertModel();
+        model.code = "a";
+        model.upsert("test");
+        Long id = model.getId();
+
+        model.code = "b";
+        model.upsert("test");
+        assertEquals(id, model.getId());
+        assertEquals(1, new Select().from(UpsertModel.class).count("test"));
+        assertSame(model, Cache.getEntity("test", UpsertModel.class, id));
+
+        Cache.clear();
+        UpsertModel loaded = new Select().from(UpsertModel.class).where("Id = ?", id).executeSingle("test");
+        assertEquals("b", loaded.code);
+    }
+
+    /**
+     * References of a multi-row result are loaded up front and shared between the rows.
+     */
+    public void testPrefetchReferences()
+    {
+        List<ReferenceModel> children = new ArrayList<ReferenceModel>();
+        for (int i = 0; i < 3; i++)
+        {
+            MockModel parent = new MockModel();
+            parent.intField = i;
+            parent.save("test");
+            for (int j = 0; j < 2; j++)
+            {
+                ReferenceModel child = new ReferenceModel();
+                child.parent = parent;
+                children.add(child);
+            }
+        }
+        children.add(new ReferenceModel());
+        Model.saveMultiple("test", children);
+
+        Cache.clear();
+        List<ReferenceModel> loaded = new Select().from(ReferenceModel.class).orderBy("Id").execute("test");
+        assertEquals(children.size(), loaded.size());
+        for (int i = 0; i < 6; i++)
+        {
+            MockModel parent = loaded.get(i).parent;
+            assertEquals(i / 2, parent.intField);
+            assertSame(parent, Cache.getEntity("test", MockModel.class, parent.getId()));
+        }
+        assertSame(loaded.get(0).parent, loaded.get(1).parent);
+        assertNull(loaded.get(6).parent);
+    }
+
+    /**
+     * Prefetched references are shared by the rows of the query even when their table
+     * is not cached.
+     */
+    public void testPrefetchUncachedReferences()
+    {
+        UncachedParentModel parent = new UncachedParentModel();
+        parent.value = 4;
+        parent.save("test");
+
+        List<UncachedReferenceModel> children = new ArrayList<UncachedReferenceModel>();
+        for (int i = 0; i < 3; i++)
+        {
+            UncachedReferenceModel child = new UncachedReferenceModel();
+            child.parent = parent;
+            children.add(child);
+        }
+        Model.saveMultiple("test", children);
+
+        Cache.clear();
+        List<UncachedReferenceModel> loaded = new Select().from(UncachedReferenceModel.class).execute("test");
+        assertEquals(children.size(), loaded.size());
+        assertEquals(4, loaded.get(0).parent.value);
+        assertSame(loaded.get(0).parent, loaded.get(1).parent);
+        assertSame(loaded.get(0).parent, loaded.get(2).parent);
+        assertNull(Cache.getEntity("test", UncachedParentModel.class, parent.getId()));
+    }
+
+    /**
+     * Included references are hydrated from the rows of the same query.
+     */
+    public void testInclude()
+    {
+        MockModel parent = new MockModel();
+        parent.intField = 3;
+        parent.save("test");
+        ReferenceModel child = new ReferenceModel();
+        child.parent = parent;
+        ReferenceModel orphan = new ReferenceModel();
+        Model.saveMultiple("test", Arrays.asList(child, orphan));
+
+        Cache.clear();
+        List<ReferenceModel> loaded = new Select().from(ReferenceModel.class)
+                .include(MockModel.class, "parent")
+                .orderBy("ReferenceModel.Id")
+                .execute("test");
+        assertEquals(2, loaded.size());
+        assertEquals(child.getId(), loaded.get(0).getId());
+        assertEquals(3, loaded.get(0).parent.intField);
+        assertSame(loaded.get(0).parent, Cache.getEntity("test", MockModel.class, parent.getId()));
+        assertNull(loaded.get(1).parent);
+    }
+
+    /**
+     * Included references are handed to the rows even when their table is not cached.
+     */
+    public void testIncludeUncached()
+    {
+        UncachedParentModel parent = new UncachedParentModel();
+        parent.value = 5;
+        parent.save("test");
+        for (int i = 0; i < 2; i++)
+        {
+            UncachedReferenceModel child = new UncachedReferenceModel();
+            child.parent = parent;
+            child.save("test");
+        }
+
+        Cache.clear();
+        List<UncachedReferenceModel> loaded = new Select().from(UncachedReferenceModel.class)
+                .include(UncachedParentModel.class, "parent")
+                .execute("test");
+        assertEquals(2, loaded.size());
+        assertEquals(5, loaded.get(0).parent.value);
+        assertSame(loaded.get(0).parent, loaded.get(1).parent);
+        assertNull(Cache.getEntity("test", UncachedParentModel.class, parent.getId()));
+    }
+
+    /**
+     * Lazy references keep the id only and load the entity when dereferenced.
+     */
+    public void testLazyReference()
+    {
+        MockModel parent = new MockModel();
+        parent.intField = 7;
+        parent.save("test");
+
+        LazyReferenceModel child = new LazyReferenceModel();
+        child.parent = Ref.of(parent);
+        child.save("test");
+
+        Cache.clear();
+        LazyReferenceModel loaded = new Select().from(LazyReferenceModel.class).where("Id = ?", child.getId()).executeSingle("test");
+        assertFalse(loaded.parent.isLoaded());
+        assertEquals(parent.getId(), loaded.parent.getId());
+        assertNull(Cache.getEntity("test", MockModel.class, parent.getId()));
+
+        assertEquals(7, loaded.parent.get().intField);
+        assertTrue(loaded.parent.isLoaded());
+        assertEquals(child.parent, loaded.parent);
+    }
+
+    /**
+     * Iterated rows are hydrated one at a time, the uncached mode keeps them out of the entity
+     * cache and the cursor is closed after the last row.
+     */
+    public void testIterate()
+    {
+        List<MockModel> models = new ArrayList<MockModel>();
+        for (int i = 0; i < 5; i++)
+        {
+            MockModel model = new MockModel();
+            model.intField = i;
+            models.add(model);
+        }
+        Model.saveMultiple("test", models);
+
+        Cache.clear();
+        ModelIterator<MockModel> iterator = new Select().from(MockModel.class).orderBy("Id").iterate("test", false);
+        int count = 0;
+        for (MockModel model : iterator)
+        {
+            assertEquals(count, model.intField);
+            assertNull(Cache.getEntity("test", MockModel.class, model.getId()));
+            count++;
+        }
+        assertEquals(models.size(), count);
+        assertFalse(iterator.hasNext());
+        iterator.close();
+
+        iterator = new Select().from(MockModel.class).orderBy("Id").iterate("test");
+        try
+        {
+            MockModel first = iterator.next();
+            assertSame(first, Cache.getEntity("test", MockModel.class, first.getId()));
+        }
+        finally
+        {
+            iterator.close();
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    /**
+     * Uncached iteration hands included models to the rows and loads the other references
+     * without the entity cache.
+     */
+    public void testIterateUncachedReferences()
+    {
+        MockModel parent = new MockModel();
+        parent.intField = 6;
+        parent.save("test");
+        ReferenceModel child = new ReferenceModel();
+        child.parent = parent;
+        child.save("test");
+
+        Cache.clear();
+        ModelIterator<ReferenceModel> iterator = new Select().from(ReferenceModel.class)
+                .include(MockModel.class, "parent")
+                .iterate("test", false);
+        ReferenceModel loaded = iterator.next();
+        assertFalse(iterator.hasNext());
+        assertEquals(6, loaded.parent.intField);
+        assertNull(Cache.getEntity("test", MockModel.class, parent.getId()));
+
+        iterator = new Select().from(ReferenceModel.class).iterate("test", false);
+        loaded = iterator.next();
+        assertFalse(iterator.hasNext());
+        assertEquals(6, loaded.parent.intField);
+        assertNull(Cache.getEntity("test", MockModel.class, parent.getId()));
+        assertNull(Cache.getEntity("test", ReferenceModel.class, child.getId()));
+    }
+
+    /**
+     * Keyset pages walk every row once, rows sharing an ordering value are told apart by id.
+     */
+    public void testKeysetPages()
+    {
+        int[] values = {3, 1, 2, 1, 3};
+        List<MockModel> models = new ArrayList<MockModel>();
+        for (int value : values)
+        {
+            MockModel model = new MockModel();
+            model.intField = value;
+            models.add(model);
+        }
+        Model.saveMultiple("test", models);
+
+        List<MockModel> walked = new ArrayList<MockModel>();
+        Keyset keyset = new Keyset("intField");
+        From   query  = new Select().from(MockModel.class).offset(1);
+        String token  = null;
+        do
+        {
+            Keyset.Page<MockModel> page = keyset.page("test", query, token, 2);
+            assertTrue(page.getItems().size() <= 2);
+            walked.addAll(page.getItems());
+            token = page.getNextToken();
+        }
+        while (token != null);
+
+        assertEquals(models.size(), walked.size());
+        assertEquals(Arrays.asList(models.get(1), models.get(3), models.get(2), models.get(0), models.get(4)), walked);
+
+        Keyset.Page<MockModel> page = new Keyset(null, true).page("test", new Select().from(MockModel.class).where("intField = ?", 3), null, 1);
+        assertEquals(models.get(4), page.getItems().get(0));
+        page = new Keyset(null, true).page("test", new Select().from(MockModel.class).where("intField = ?", 3), page.getNextToken(), 1);
+        assertEquals(models.get(0), page.getItems().get(0));
+    }
+
+    /**
+     * Tokens keep the exact value of REAL ordering columns, and keys are read from the
+     * queried table when a join selects columns with the same names.
+     */
+    public void testKeysetTokens()
+    {
+        // Offsets the ids of the parents from the ids of their children.
+        new ParentJoinMockModel().save("test");
+
+        double[] values = {0.1 + 0.2, 0.3};
+        for (double value : values)
+        {
+            ParentJoinMockModel parent = new ParentJoinMockModel();
+            parent.doubleField = value;
+            parent.save("test");
+            ChildMockModel child = new ChildMockModel();
+            child.doubleField = value;
+            child.parent = parent;
+            child.save("test");
+        }
+
+        Keyset keyset = new Keyset("doubleField", true);
+        From query = new Select().from(ChildMockModel.class)
+                .join(ParentJoinMockModel.class).on("ChildMockModel.parent = ParentJoinMockModel.Id");
+        Keyset.Page<ChildMockModel> page = keyset.page("test", query, null, 1);
+        assertEquals(0.1 + 0.2, page.getItems().get(0).doubleField);
+        assertEquals(page.getItems().get(0).getId() + ":" + (0.1 + 0.2), page.getNextToken());
+
+        page = keyset.page("test", query, page.getNextToken(), 1);
+        assertEquals(0.3, page.getItems().get(0).doubleField);
+    }
+
+    public void testUpdateStatement()
+    {
+        String sql = SQLiteUtils.createUpdateStatement(Cache.getTableInfo(MockModel.class));
+
+        assertFalse(sql.contains("'Id' =?"));
+        assertTrue(sql.endsWith(" WHERE \"Id\" = ?"));
+        assertEquals(5, (int) Cache.getTableInfo(MockModel.class).getUpdateColumnIndexes().get("Id"));
+    }
+
+    /**
+     * Serialized columns are converted by the serializers bound to the filler.
+     */
+    public void testSerializedColumnRoundTrip()
+    {
+        Date date = new Date(1234567890L);
+        MockModel model = new MockModel();
+        model.dateField = date;
+        model.save("test");
+
+        Cache.clear();
+        MockModel loaded = new Select().from(MockModel.class).where("Id = ?", model.getId()).executeSingle("test");
+        assertNotSame(model, loaded);
+        assertEquals(date, loaded.dateField);
+    }
+
+    /**
+     * The column plan is resolved from the cursor shape, including the
+     * columns of the super model filler.
+     */
+    public void testColumnPlan()
+    {
+        Cursor cursor = Cache.openDatabase("test").rawQuery("SELECT parent, intField, Id FROM ChildMockModel", null);
+        try
+        {
+            ColumnPlan plan = Cache.getColumnPlan(ChildMockModel.class, cursor);
+
+            assertEquals(2, plan.idIndex);
+            assertEquals(0, plan.indexes[0]);
+            assertNotNull(plan.superPlan);
+            assertEquals(2, plan.superPlan.idIndex);
+
+            // dateField, doubleField, intField, booleanField in declaration order
+            assertEquals(-1, plan.superPlan.indexes[0]);
+            assertEquals(1, plan.superPlan.indexes[2]);
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Model references are loaded when a model class reaches IModel only
+     * through its superclass.
+     */
+    public void testJoinLoadsReference()
+    {
+        ParentJoinMockModel parent = new ParentJoinMockModel();
+        parent.save("test");
+
+        ChildMockModel child = new ChildMockModel();
+        child.parent = parent;
+        child.save("test");
+
+        ChildMockModel result = new Select().from(ChildMockModel.class).join(ParentJoinMockModel.class).on("ParentJoinMockModel.Id = ChildMockModel.parent").executeSingle("test");
+
+        assertNotNull(result.parent);
+        assertEquals(parent.getId(), result.parent.getId());
+    }
+
     /**
      * Mock model as we need 2 different model classes.
      */
@@ -285,4 +843,52 @@ public class ModelTest extends ActiveAndroidTestCase
         @Column
         ParentJoinMockModel parent;
     }
+
+    @Table(name = "ReferenceModel")
+    public static class ReferenceModel extends Model
+    {
+        @Column
+        public MockModel parent;
+    }
+
+    @Table(name = "LazyReferenceModel")
+    public static class LazyReferenceModel extends Model
+    {
+        @Column
+        public Ref<MockModel> parent;
+    }
+
+    @Table(name = "UpsertModel")
+    public static class UpsertModel extends Model
+    {
+        @Column(unique = true)
+        public String code;
+
+        @Column
+        public int value;
+    }
+
+    @Table(name = "TrackedModel", trackChanges = true)
+    public static class TrackedModel extends Model
+    {
+        @Column
+        public String name;
+
+        @Column
+        public int visits;
+    }
+
+    @Table(name = "UncachedParentModel", cachePolicy = CachePolicy.NONE)
+    public static class UncachedParentModel extends Model
+    {
+        @Column
+        public int value;
+    }
+
+    @Table(name = "UncachedReferenceModel")
+    public static class UncachedReferenceModel extends Model
+    {
+        @Column
+        public UncachedParentModel parent;
+    }
 }
@@ -1,11 +1,13 @@
 package com.activeandroid.test.model;
 
+import com.activeandroid.sebbia.Cache;
 import com.activeandroid.sebbia.Model;
 import com.activeandroid.sebbia.annotation.Column;
 import com.activeandroid.sebbia.annotation.DoNotGenerate;
 import com.activeandroid.sebbia.query.Select;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 public class DoNotGenerateTest extends ModelTestCase
@@ -19,6 +21,40 @@ public class DoNotGenerateTest extends ModelTestCase
         private String value;
     }
 
+    @DoNotGenerate
+    public static class ReflectiveModel extends Model
+    {
+        @Column(name = "shortValue")
+        private short shortValue;
+
+        @Column(name = "kind")
+        private Kind kind;
+
+        @Column(name = "date")
+        private Date date;
+    }
+
+    public enum Kind
+    {
+        FIRST, SECOND
+    }
+
+    public void testReflectiveRoundTrip()
+    {
+        ReflectiveModel model = new ReflectiveModel();
+        model.shortValue = 7;
+        model.kind = Kind.SECOND;
+        model.date = new Date(1234567890L);
+        model.save("test");
+
+        Cache.clear();
+        ReflectiveModel loaded = new Select().from(ReflectiveModel.class).where("Id = ?", model.getId()).executeSingle("test");
+        assertNotSame(model, loaded);
+        assertEquals(7, loaded.shortValue);
+        assertEquals(Kind.SECOND, loaded.kind);
+        assertEquals(model.date, loaded.date);
+    }
+
     public void testNoGenerate()
     {
         List<DoNotGenerateModel> impls = new ArrayList<DoNotGenerateModel>();
@@ -242,6 +242,13 @@ public class FromTest extends SqlableTestCase
                         .as("a"));
     }
 
+    public void testInclude()
+    {
+        assertSqlEquals("SELECT ALL MockModel.*, include0.Id AS \"include0_Id\" FROM MockModel "
+                        + "LEFT JOIN JoinModel AS include0 ON MockModel.joinModel = include0.Id WHERE Id > 5",
+                from().include(JoinModel.class, "joinModel").where("Id > 5"));
+    }
+
     private From from()
     {
         return new Select().all().from(MockModel.class);
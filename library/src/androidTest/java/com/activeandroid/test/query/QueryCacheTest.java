@@ -0,0 +1,138 @@
+package com.activeandroid.test.query;
+
+import android.test.AndroidTestCase;
+
+import com.activeandroid.sebbia.ActiveAndroid;
+import com.activeandroid.sebbia.Cache;
+import com.activeandroid.sebbia.Configuration;
+import com.activeandroid.sebbia.Model;
+import com.activeandroid.sebbia.annotation.Column;
+import com.activeandroid.sebbia.annotation.Table;
+import com.activeandroid.sebbia.query.Delete;
+import com.activeandroid.sebbia.query.Select;
+import com.activeandroid.sebbia.query.Update;
+
+import java.util.List;
+
+public class QueryCacheTest extends AndroidTestCase
+{
+    private static final String DATABASE = "QueryCacheTest";
+
+    @Override
+    protected void setUp()
+    {
+        Configuration conf = new Configuration.Builder(getContext())
+                .setDatabaseName(DATABASE)
+                .addModelClasses(QueryCacheModel.class, QueryCacheChildModel.class)
+                .create();
+        ActiveAndroid.initialize(conf, true);
+        new Delete().from(QueryCacheChildModel.class).execute(DATABASE);
+        new Delete().from(QueryCacheModel.class).execute(DATABASE);
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        ActiveAndroid.dispose();
+        super.tearDown();
+    }
+
+    public void testRepeatedQueryIsServedFromCache()
+    {
+        new QueryCacheModel("a").save(DATABASE);
+
+        List<QueryCacheModel> first = select("a");
+        List<QueryCacheModel> second = select("a");
+
+        assertEquals(1, first.size());
+        assertEquals(1, second.size());
+        assertSame(first.get(0), second.get(0));
+    }
+
+    public void testSaveInvalidatesResult()
+    {
+        new QueryCacheModel("a").save(DATABASE);
+        assertEquals(1, select("a").size());
+
+        new QueryCacheModel("a").save(DATABASE);
+        assertEquals(2, select("a").size());
+    }
+
+    public void testDeleteInvalidatesResult()
+    {
+        QueryCacheModel model = new QueryCacheModel("a");
+        model.save(DATABASE);
+        assertEquals(1, select("a").size());
+
+        model.delete(DATABASE);
+        assertEquals(0, select("a").size());
+    }
+
+    public void testUpdateInvalidatesResult()
+    {
+        new QueryCacheModel("a").save(DATABASE);
+        assertEquals(1, select("a").size());
+
+        new Update(QueryCacheModel.class).set("name = ?", "b").execute(DATABASE);
+        assertEquals(0, select("a").size());
+    }
+
+    public void testRawSqlInvalidatesResult()
+    {
+        new QueryCacheModel("a").save(DATABASE);
+        assertEquals(1, select("a").size());
+
+        ActiveAndroid.execSQL("DELETE FROM " + Cache.getTableName(QueryCacheModel.class), DATABASE);
+        assertEquals(0, select("a").size());
+    }
+
+    public void testWriteToIncludedTableInvalidatesResult()
+    {
+        QueryCacheModel parent = new QueryCacheModel("a");
+        parent.save(DATABASE);
+        QueryCacheChildModel child = new QueryCacheChildModel();
+        child.parent = parent;
+        child.save(DATABASE);
+        assertEquals(1, selectChildren("a").size());
+
+        new Update(QueryCacheModel.class).set("name = ?", "b").execute(DATABASE);
+        assertEquals(0, selectChildren("a").size());
+    }
+
+    private static List<QueryCacheModel> select(String name)
+    {
+        return new Select().from(QueryCacheModel.class).where("name = ?", name).cache().execute(DATABASE);
+    }
+
+    private static List<QueryCacheChildModel> selectChildren(String parentName)
+    {
+        return new Select().from(QueryCacheChildModel.class)
+                .include(QueryCacheModel.class, "parent")
+                .where("include0.name = ?", parentName)
+                .cache()
+                .execute(DATABASE);
+    }
+
+    @Table(name = "QueryCacheModel")
+    public static class QueryCacheModel extends Model
+    {
+        @Column(name = "name")
+        public String name;
+
+        public QueryCacheModel()
+        {
+        }
+
+        QueryCacheModel(String name)
+        {
+            this.name = name;
+        }
+    }
+
+    @Table(name = "QueryCacheChildModel")
+    public static class QueryCacheChildModel extends Model
+    {
+        @Column(name = "parent")
+        public QueryCacheModel parent;
+    }
+}
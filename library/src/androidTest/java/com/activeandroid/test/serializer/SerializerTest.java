@@ -0,0 +1,45 @@
+package com.activeandroid.test.serializer;
+
+import android.test.AndroidTestCase;
+
+import com.activeandroid.sebbia.serializer.CalendarSerializer;
+import com.activeandroid.sebbia.serializer.FileSerializer;
+import com.activeandroid.sebbia.serializer.LongSerializer;
+import com.activeandroid.sebbia.serializer.StringSerializer;
+import com.activeandroid.sebbia.serializer.UtilDateSerializer;
+
+import java.io.File;
+import java.util.Calendar;
+import java.util.Date;
+
+public class SerializerTest extends AndroidTestCase
+{
+    public void testLongSerializerMatchesObjectContract()
+    {
+        UtilDateSerializer serializer = new UtilDateSerializer();
+        Date               date       = new Date(1234567890L);
+
+        assertTrue(serializer instanceof LongSerializer);
+        assertEquals(serializer.serialize(date).longValue(), serializer.serializeLong(date));
+        assertEquals(serializer.deserialize(1234567890L), serializer.deserializeLong(1234567890L));
+    }
+
+    public void testCalendarSerializer()
+    {
+        CalendarSerializer serializer = new CalendarSerializer();
+        Calendar           calendar   = serializer.deserializeLong(1234567890L);
+
+        assertEquals(1234567890L, calendar.getTimeInMillis());
+        assertEquals(1234567890L, serializer.serializeLong(calendar));
+    }
+
+    public void testStringSerializerMatchesObjectContract()
+    {
+        FileSerializer serializer = new FileSerializer();
+        File           file       = new File("/tmp/file");
+
+        assertTrue(serializer instanceof StringSerializer);
+        assertEquals(serializer.serialize(file), serializer.serializeString(file));
+        assertEquals(file, serializer.deserializeString("/tmp/file"));
+    }
+}
@@ -21,8 +21,25 @@ import android.database.sqlite.SQLiteDatabase;
 
 import com.activeandroid.sebbia.util.Log;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
 public final class ActiveAndroid
 {
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PUBLIC INTERFACES
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Receives the outcome of {@link #initializeAsync}, on the main thread.
+     */
+    public interface InitializationListener
+    {
+        void onInitialized();
+
+        void onInitializationFailed(Throwable error);
+    }
+
     //////////////////////////////////////////////////////////////////////////////////////
     // PUBLIC METHODS
     //////////////////////////////////////////////////////////////////////////////////////
@@ -49,11 +66,61 @@ public final class ActiveAndroid
         Cache.initialize(configuration);
     }
 
+    /**
+     * Initializes the library and opens the default database on a background thread, so model
+     * discovery, schema creation and migrations stay off the calling thread. Database and
+     * metadata access made before it is done wait for it.
+     */
+    public static Future<Void> initializeAsync(Configuration configuration)
+    {
+        return initializeAsync(configuration, null);
+    }
+
+    public static Future<Void> initializeAsync(Configuration configuration, InitializationListener listener)
+    {
+        return Cache.initializeAsync(configuration, null, listener);
+    }
+
+    /**
+     * Initializes the library on the executor, for apps that run their background work on their
+     * own pool.
+     */
+    public static Future<Void> initializeAsync(Configuration configuration, Executor executor, InitializationListener listener)
+    {
+        return Cache.initializeAsync(configuration, executor, listener);
+    }
+
     public static void clearCache()
     {
         Cache.clear();
     }
 
+    /**
+     * Clears the entities cached for one database, the other databases keep theirs.
+     */
+    public static void clearCache(String database)
+    {
+        Cache.clear(database);
+    }
+
+    /**
+     * @return hit, miss, eviction and hydration counters of the entity cache per table.
+     */
+    public static CacheStatistics getCacheStatistics()
+    {
+        return Cache.getStatistics();
+    }
+
+    public static CacheStatistics getCacheStatistics(String database)
+    {
+        return Cache.getStatistics(database);
+    }
+
+    public static void resetCacheStatistics()
+    {
+        Cache.resetStatistics();
+    }
+
     public static void dispose()
     {
         Cache.dispose();
@@ -92,10 +159,12 @@ public final class ActiveAndroid
     public static void execSQL(String sql, String database)
     {
         Cache.openDatabase(database).execSQL(sql);
+        Cache.invalidateQueries();
     }
 
     public static void execSQL(String sql, Object[] bindArgs, String database)
     {
         Cache.openDatabase(database).execSQL(sql, bindArgs);
+        Cache.invalidateQueries();
     }
 }
@@ -17,20 +17,38 @@ package com.activeandroid.sebbia;
  */
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
-import android.support.v4.util.LruCache;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.SparseArray;
 
 import com.activeandroid.sebbia.annotation.DoNotGenerate;
+import com.activeandroid.sebbia.internal.ColumnPlan;
 import com.activeandroid.sebbia.internal.EmptyModelFiller;
 import com.activeandroid.sebbia.internal.ModelFiller;
+import com.activeandroid.sebbia.internal.ModelRegistry;
+import com.activeandroid.sebbia.query.QueryCache;
 import com.activeandroid.sebbia.serializer.TypeSerializer;
 import com.activeandroid.sebbia.util.Log;
 import com.activeandroid.sebbia.util.ReflectionUtils;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
 public final class Cache
 {
@@ -46,15 +64,31 @@ public final class Cache
 
     private static Context sContext;
 
-    private static ModelInfo sModelInfo;
+    private static volatile ModelInfo sModelInfo;
 
     private static SparseArray<DatabaseHelper> sDatabaseHelper = new SparseArray<>();;
 
-    private static LruCache<String, Model> sEntities;
+    // Identity maps by database, every database gets its own capacity and eviction.
+    private static volatile ConcurrentHashMap<String, EntityCache> sEntities;
+    private static long                                             sEntityCapacity;
+    private static boolean                                          sEntityCacheWeighed;
 
-    private static boolean sIsInitialized = false;
+    private static volatile QueryCache sQueries;
+
+    private static int sSaveChunkSize;
+
+    private static volatile boolean sIsInitialized = false;
+
+    // Pending initializeAsync, readers block on it until the library is initialized.
+    private static volatile FutureTask<Void> sInitialization;
+    private static volatile Thread           sInitializationThread;
+
+    // Marks types without a filler in lazy mode, where the map is filled on demand.
+    private static final ModelFiller NO_FILLER = new EmptyModelFiller();
+
+    private static volatile ConcurrentHashMap<Class<? extends Model>, ModelFiller> sFillers;
+    private static final ConcurrentHashMap<Class<?>, Constructor<?>> sConstructors = new ConcurrentHashMap<Class<?>, Constructor<?>>();
 
-    private static Map<Class<? extends Model>, ModelFiller> sFillers;
     private static int                                      sVersion;
     private static String                                   sSqlParser;
 
@@ -72,7 +106,7 @@ public final class Cache
 
     public static synchronized void initialize(Configuration configuration)
     {
-        if (sIsInitialized)
+        if (sIsInitialized || sModelInfo != null)
         {
             Log.v("ActiveAndroid already initialized.");
             return;
@@ -87,30 +121,154 @@ public final class Cache
         sDatabaseHelper = new SparseArray<>();
         // sDatabaseHelper = new DatabaseHelper(configuration.getContext(), configuration.getDatabaseName(), sVersion, sSqlParser);
 
-        // TODO: It would be nice to override sizeOf here and calculate the memory
-        // actually used, however at this point it seems like the reflection
-        // required would be too costly to be of any benefit. We'll just set a max
-        // object size instead.
-        sEntities = new LruCache<String, Model>(configuration.getCacheSize());
+        sEntityCacheWeighed = configuration.getCacheMemorySize() > 0;
+        sEntityCapacity = sEntityCacheWeighed ? configuration.getCacheMemorySize() : configuration.getCacheSize();
+        sEntities = new ConcurrentHashMap<String, EntityCache>();
+        sQueries = new QueryCache(configuration.getQueryCacheSize());
+        sSaveChunkSize = configuration.getSaveChunkSize();
 
         initializeModelFillers();
 
         // openDatabase(database.hashCode());
 
-        sIsInitialized = true;
+        // An asynchronous initialization is published once its database is open as well.
+        if (sInitialization == null)
+        {
+            sIsInitialized = true;
+        }
 
         Log.v("ActiveAndroid initialized successfully.");
     }
 
 
+    /**
+     * Runs {@link #initialize(Configuration)} and opens the default database on the executor, or
+     * on a thread of its own when the executor is null. Until it is done, database and metadata
+     * access block instead of failing.
+     */
+    public static synchronized Future<Void> initializeAsync(final Configuration configuration, Executor executor,
+                                                            final ActiveAndroid.InitializationListener listener)
+    {
+        FutureTask<Void> pending = sInitialization;
+        if (pending != null)
+        {
+            return pending;
+        }
+
+        final FutureTask<Void> initialization = new FutureTask<Void>(new Callable<Void>()
+        {
+            @Override
+            public Void call() throws Exception
+            {
+                sInitializationThread = Thread.currentThread();
+                try
+                {
+                    initialize(configuration);
+                    // Creates the schema or runs the migrations, the rest of the work on first use.
+                    openDatabase(configuration.getDatabaseName());
+                }
+                finally
+                {
+                    sInitializationThread = null;
+                }
+                return null;
+            }
+        })
+        {
+            @Override
+            protected void set(Void result)
+            {
+                // Published once the database is open, before the callers waiting for it resume.
+                synchronized (Cache.class)
+                {
+                    if (sInitialization == this)
+                    {
+                        sIsInitialized = true;
+                    }
+                }
+                super.set(result);
+            }
+
+            @Override
+            protected void done()
+            {
+                if (listener != null)
+                {
+                    notifyInitialized(this, listener);
+                }
+            }
+        };
+
+        sInitialization = initialization;
+        try
+        {
+            if (executor != null)
+            {
+                executor.execute(initialization);
+            }
+            else
+            {
+                ExecutorService defaultExecutor = Executors.newSingleThreadExecutor(new ThreadFactory()
+                {
+                    @Override
+                    public Thread newThread(Runnable runnable)
+                    {
+                        return new Thread(runnable, "ActiveAndroid-init");
+                    }
+                });
+                defaultExecutor.execute(initialization);
+                // The thread ends once the initialization is done.
+                defaultExecutor.shutdown();
+            }
+        }
+        catch (RuntimeException e)
+        {
+            sInitialization = null;
+            throw e;
+        }
+
+        return initialization;
+    }
+
     public static synchronized void clear()
     {
-        sEntities.evictAll();
+        for (EntityCache entities : sEntities.values())
+        {
+            entities.clear();
+        }
+        sQueries.invalidateAll();
         Log.v("Cache cleared.");
     }
 
-    public static synchronized void dispose()
+    public static synchronized void clear(String database)
+    {
+        EntityCache entities = sEntities.get(database);
+        if (entities != null)
+        {
+            entities.clear();
+        }
+        sQueries.invalidateAll();
+        Log.v("Cache of " + database + " cleared.");
+    }
+
+    public static void dispose()
+    {
+        // Let a pending initialization finish, it would otherwise race the teardown.
+        awaitInitialization();
+        synchronized (Cache.class)
+        {
+            disposeLocked();
+        }
+    }
+
+    private static void disposeLocked()
     {
+        // Already disposed.
+        if (sDatabaseHelper == null)
+        {
+            return;
+        }
+
         int size = sDatabaseHelper.size();
         for (int i = 0; i < size; i++)
         {
@@ -119,10 +277,12 @@ public final class Cache
         }
 
         sEntities = null;
+        sQueries = null;
         sModelInfo = null;
         sDatabaseHelper = null;
 
         sIsInitialized = false;
+        sInitialization = null;
 
         Log.v("ActiveAndroid disposed. Call initialize to use library.");
     }
@@ -134,18 +294,22 @@ public final class Cache
         return sIsInitialized;
     }
 
-    public static synchronized SQLiteDatabase openDatabase(String database)
+    public static SQLiteDatabase openDatabase(String database)
     {
-        int key = database.hashCode();
-
-        DatabaseHelper helper = sDatabaseHelper.get(key);
-        if (helper == null)
+        awaitInitialization();
+        synchronized (Cache.class)
         {
-            helper = new DatabaseHelper(sContext, database, sVersion, sSqlParser);
-            sDatabaseHelper.put(key, helper);
-        }
+            int key = database.hashCode();
+
+            DatabaseHelper helper = sDatabaseHelper.get(key);
+            if (helper == null)
+            {
+                helper = new DatabaseHelper(sContext, database, sVersion, sSqlParser);
+                sDatabaseHelper.put(key, helper);
+            }
 
-        return helper.getWritableDatabase();
+            return helper.getWritableDatabase();
+        }
     }
 
     public static synchronized void closeDatabase(String database)
@@ -161,6 +325,14 @@ public final class Cache
 
     // Context access
 
+    /**
+     * @return entities written per transaction by batch saves and deletes.
+     */
+    public static int getSaveChunkSize()
+    {
+        return sSaveChunkSize;
+    }
+
     public static Context getContext()
     {
         return sContext;
@@ -178,56 +350,321 @@ public final class Cache
         return getIdentifier(entity.getClass(), entity.getId());
     }
 
-    public static synchronized void addEntity(Model entity)
+    /**
+     * Caches the entity in the partition of the database declared by its {@link
+     * com.activeandroid.sebbia.annotation.Table#db()}.
+     */
+    public static void addEntity(Model entity)
+    {
+        addEntity(getDefaultPartition(entity.getClass()), entity);
+    }
+
+    public static void addEntity(String database, Model entity)
+    {
+        getPartition(database).put(entity);
+    }
+
+    static void addEntity(String database, Model entity, long loadNanos)
+    {
+        getPartition(database).put(entity, loadNanos);
+    }
+
+    public static Model getEntity(Class<? extends Model> type, long id)
+    {
+        return getEntity(getDefaultPartition(type), type, id);
+    }
+
+    public static Model getEntity(String database, Class<? extends Model> type, long id)
     {
-        sEntities.put(getIdentifier(entity), entity);
+        return getPartition(database).get(type, id);
     }
 
-    public static synchronized Model getEntity(Class<? extends Model> type, long id)
+    public static void removeEntity(Model entity)
     {
-        return sEntities.get(getIdentifier(type, id));
+        removeEntity(getDefaultPartition(entity.getClass()), entity);
     }
 
-    public static synchronized void removeEntity(Model entity)
+    public static void removeEntity(String database, Model entity)
     {
-        sEntities.remove(getIdentifier(entity));
+        EntityCache entities = sEntities.get(database);
+        if (entities != null)
+        {
+            entities.remove(entity);
+        }
+    }
+
+    // Statistics
+
+    /**
+     * @return counters of all databases, summed up per table.
+     */
+    public static CacheStatistics getStatistics()
+    {
+        List<CacheStatistics> partitions = new ArrayList<CacheStatistics>();
+        for (EntityCache entities : sEntities.values())
+        {
+            partitions.add(entities.getStatistics());
+        }
+
+        return CacheStatistics.combine(partitions);
+    }
+
+    public static CacheStatistics getStatistics(String database)
+    {
+        return getPartition(database).getStatistics();
+    }
+
+    public static void resetStatistics()
+    {
+        for (EntityCache entities : sEntities.values())
+        {
+            entities.resetStatistics();
+        }
+    }
+
+    // Query cache
+
+    public static QueryCache getQueryCache()
+    {
+        return sQueries;
+    }
+
+    /**
+     * Drops the cached query results that read the table of the given type, must be called
+     * after every write to the table.
+     */
+    public static void invalidateQueries(Class<? extends Model> type)
+    {
+        QueryCache queries = sQueries;
+        if (queries != null)
+        {
+            queries.invalidate(getTableName(type));
+        }
+    }
+
+    /**
+     * Drops all cached query results, for writes that may touch any table.
+     */
+    public static void invalidateQueries()
+    {
+        QueryCache queries = sQueries;
+        if (queries != null)
+        {
+            queries.invalidateAll();
+        }
     }
 
     // Model cache
 
-    public static synchronized Collection<TableInfo> getTableInfos()
+    public static Collection<TableInfo> getTableInfos()
     {
+        awaitInitialization();
         return sModelInfo.getTableInfos();
     }
 
-    public static synchronized TableInfo getTableInfo(Class<? extends Model> type)
+    public static TableInfo getTableInfo(Class<? extends Model> type)
     {
+        awaitInitialization();
         return sModelInfo.getTableInfo(type);
     }
 
-    public static synchronized TypeSerializer getParserForType(Class<?> type)
+    /**
+     * Serializers are registered during initialization and only read afterwards, lookups do not
+     * need to lock.
+     */
+    public static TypeSerializer getParserForType(Class<?> type)
     {
+        awaitInitialization();
         return sModelInfo.getTypeSerializer(type);
     }
 
-    public static synchronized String getTableName(Class<? extends Model> type)
+    public static String getTableName(Class<? extends Model> type)
     {
+        awaitInitialization();
         return sModelInfo.getTableInfo(type).getTableName();
     }
 
-    public static synchronized String getDatabaseName(Class<? extends Model> type)
+    public static String getDatabaseName(Class<? extends Model> type)
     {
+        awaitInitialization();
         return sModelInfo.getTableInfo(type).getDatabaseName();
     }
 
+    /**
+     * Resolves the column indexes of the cursor for the generated filler of the type, or for its
+     * reflective accessors when the type has no filler.
+     */
+    public static ColumnPlan getColumnPlan(Class<? extends Model> type, Cursor cursor)
+    {
+        return getColumnPlan(type, cursor, "");
+    }
+
+    /**
+     * Column plan of a model whose columns are selected as {@code prefix + name}.
+     */
+    public static ColumnPlan getColumnPlan(Class<? extends Model> type, Cursor cursor, String prefix)
+    {
+        TableInfo   tableInfo = getTableInfo(type);
+        ModelFiller filler    = getFiller(type);
+        if (filler == null)
+        {
+            return tableInfo.createPlan(cursor, prefix);
+        }
+
+        return filler.createPlan(cursor, tableInfo.getIdName(), prefix);
+    }
+
+    /**
+     * Creates an empty model through its generated filler. Types without a filler, such as
+     * {@link DoNotGenerate} models and relations, fall back to their default constructor.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Model> T newInstance(Class<T> type) throws NoSuchMethodException, InstantiationException, IllegalAccessException, InvocationTargetException
+    {
+        ModelFiller filler = getFiller(type);
+        if (filler != null)
+        {
+            Model entity = filler.newInstance();
+            if (entity != null)
+            {
+                return (T) entity;
+            }
+        }
+
+        Constructor<?> constructor = sConstructors.get(type);
+        if (constructor == null)
+        {
+            constructor = type.getConstructor();
+            sConstructors.put(type, constructor);
+        }
+        return (T) constructor.newInstance();
+    }
+
     static ModelFiller getFiller(Class<? extends Model> type)
     {
-        return sFillers.get(type);
+        awaitInitialization();
+        ModelFiller filler = sFillers.get(type);
+        if (filler == null && sModelInfo.isLazy())
+        {
+            filler = createFiller(type);
+        }
+
+        return filler != NO_FILLER ? filler : null;
+    }
+
+    static int estimateSize(Model entity)
+    {
+        ModelFiller filler = getFiller(entity.getClass());
+        if (filler != null)
+        {
+            return filler.estimateSize(entity);
+        }
+
+        // Reflective models, assume every column holds a small boxed value.
+        return ModelFiller.MODEL_SIZE + 24 * Cache.getTableInfo(entity.getClass()).getFields().size();
+    }
+
+    private static EntityCache getPartition(String database)
+    {
+        awaitInitialization();
+        EntityCache entities = sEntities.get(database);
+        if (entities == null)
+        {
+            EntityCache created = new EntityCache(database, sEntityCapacity, sEntityCacheWeighed);
+            entities = sEntities.putIfAbsent(database, created);
+            if (entities == null)
+            {
+                entities = created;
+            }
+        }
+
+        return entities;
+    }
+
+    private static String getDefaultPartition(Class<? extends Model> type)
+    {
+        String database = getDatabaseName(type);
+        return database != null ? database : "";
+    }
+
+    /**
+     * Blocks until a pending {@link #initializeAsync} is done, costs a volatile read once the
+     * library is initialized. Must not be called while holding the Cache monitor.
+     */
+    private static void awaitInitialization()
+    {
+        if (sIsInitialized)
+        {
+            return;
+        }
+
+        FutureTask<Void> initialization = sInitialization;
+        if (initialization == null || Thread.currentThread() == sInitializationThread)
+        {
+            return;
+        }
+
+        try
+        {
+            initialization.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for ActiveAndroid to initialize.", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new RuntimeException("ActiveAndroid failed to initialize.", e.getCause());
+        }
+    }
+
+    private static void notifyInitialized(Future<Void> initialization, final ActiveAndroid.InitializationListener listener)
+    {
+        Throwable failure = null;
+        try
+        {
+            initialization.get();
+        }
+        catch (InterruptedException e)
+        {
+            failure = e;
+        }
+        catch (ExecutionException e)
+        {
+            failure = e.getCause();
+        }
+        catch (CancellationException e)
+        {
+            failure = e;
+        }
+
+        final Throwable error = failure;
+        new Handler(Looper.getMainLooper()).post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (error == null)
+                {
+                    listener.onInitialized();
+                }
+                else
+                {
+                    listener.onInitializationFailed(error);
+                }
+            }
+        });
     }
 
     private static void initializeModelFillers()
     {
-        sFillers = new HashMap<Class<? extends Model>, ModelFiller>();
+        sFillers = new ConcurrentHashMap<Class<? extends Model>, ModelFiller>();
+        if (sModelInfo.isLazy())
+        {
+            return;
+        }
+
         for (TableInfo tableInfo : sModelInfo.getTableInfos())
         {
             try
@@ -251,6 +688,29 @@ public final class Cache
 
     }
 
+    private static ModelFiller createFiller(Class<? extends Model> type)
+    {
+        ModelFiller filler = NO_FILLER;
+        if (sModelInfo.getTableInfo(type) != null && !isDoNotGenerate(type))
+        {
+            try
+            {
+                filler = instantiateFiller(type);
+            }
+            catch (IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
+            catch (InstantiationException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        ModelFiller existing = sFillers.putIfAbsent(type, filler);
+        return existing != null ? existing : filler;
+    }
+
     private static boolean isDoNotGenerate(Class<?> clazz)
     {
         if (clazz.isAnnotationPresent(DoNotGenerate.class))
@@ -270,16 +730,26 @@ public final class Cache
         ModelFiller modelFiller = sFillers.get(type);
         if (modelFiller == null)
         {
-            String fillerClassName = type.getName() + ModelFiller.SUFFIX;
-            try
+            ModelRegistry registry = sModelInfo.getRegistry();
+            if (registry != null)
             {
-                Class<? extends ModelFiller> fillerType = (Class<? extends ModelFiller>) Class.forName(fillerClassName);
-                modelFiller = fillerType.newInstance();
+                // Generated registries know their fillers, no class lookup needed.
+                modelFiller = registry.createFiller(type);
             }
-            catch (ClassNotFoundException e)
+            if (modelFiller == null)
             {
-                modelFiller = new EmptyModelFiller();
+                String fillerClassName = type.getName() + ModelFiller.SUFFIX;
+                try
+                {
+                    Class<? extends ModelFiller> fillerType = (Class<? extends ModelFiller>) Class.forName(fillerClassName);
+                    modelFiller = fillerType.newInstance();
+                }
+                catch (ClassNotFoundException e)
+                {
+                    modelFiller = new EmptyModelFiller();
+                }
             }
+            modelFiller.bindSerializers();
             if (type.getSuperclass() != null && ReflectionUtils.isModel(type.getSuperclass()))
             {
                 modelFiller.superModelFiller = instantiateFiller((Class<? extends Model>) type.getSuperclass());
@@ -0,0 +1,200 @@
+package com.activeandroid.sebbia;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of the entity cache counters, see {@link ActiveAndroid#getCacheStatistics()}.
+ * <p/>
+ * Tables are summed up one stripe at a time while other threads keep using the cache, the
+ * totals are therefore consistent per stripe but not across the whole cache.
+ */
+public final class CacheStatistics
+{
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE MEMBERS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private final String                mDatabase;
+    private final long                  mCapacity;
+    private final boolean               mWeighed;
+    private final long                  mSharedWeight;
+    private final List<TableStatistics> mTables;
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    CacheStatistics(String database, long capacity, boolean weighed, long sharedWeight, List<TableStatistics> tables)
+    {
+        mDatabase = database;
+        mCapacity = capacity;
+        mWeighed = weighed;
+        mSharedWeight = sharedWeight;
+        mTables = Collections.unmodifiableList(tables);
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Sums up the snapshots of several databases per table.
+     */
+    static CacheStatistics combine(List<CacheStatistics> partitions)
+    {
+        long capacity = 0;
+        long sharedWeight = 0;
+        boolean weighed = false;
+        Map<Class<? extends Model>, TableStatistics> tables = new LinkedHashMap<Class<? extends Model>, TableStatistics>();
+        for (CacheStatistics partition : partitions)
+        {
+            capacity += partition.mCapacity;
+            sharedWeight += partition.mSharedWeight;
+            weighed = partition.mWeighed;
+            for (TableStatistics table : partition.mTables)
+            {
+                TableStatistics sum = tables.get(table.getType());
+                if (sum == null)
+                {
+                    sum = new TableStatistics(table.getType(), table.getPolicy());
+                    tables.put(table.getType(), sum);
+                }
+                sum.add(table);
+            }
+        }
+
+        return new CacheStatistics(null, capacity, weighed, sharedWeight, new ArrayList<TableStatistics>(tables.values()));
+    }
+
+    /**
+     * @return the database the counters belong to, null if they are summed over all of them.
+     */
+    public String getDatabase()
+    {
+        return mDatabase;
+    }
+
+    /**
+     * @return capacity shared by the tables with the default cache policy.
+     */
+    public long getCapacity()
+    {
+        return mCapacity;
+    }
+
+    /**
+     * @return true if capacity and weights are estimated bytes, false if they are entities.
+     */
+    public boolean isWeighed()
+    {
+        return mWeighed;
+    }
+
+    /**
+     * @return weight counted against {@link #getCapacity()}.
+     */
+    public long getSharedWeight()
+    {
+        return mSharedWeight;
+    }
+
+    public List<TableStatistics> getTables()
+    {
+        return mTables;
+    }
+
+    /**
+     * @return counters of the given table, null if it has not been cached since the cache
+     * was initialized.
+     */
+    public TableStatistics getTable(Class<? extends Model> type)
+    {
+        for (TableStatistics table : mTables)
+        {
+            if (table.getType() == type)
+            {
+                return table;
+            }
+        }
+
+        return null;
+    }
+
+    public long getHits()
+    {
+        long hits = 0;
+        for (TableStatistics table : mTables)
+        {
+            hits += table.getHits();
+        }
+        return hits;
+    }
+
+    public long getMisses()
+    {
+        long misses = 0;
+        for (TableStatistics table : mTables)
+        {
+            misses += table.getMisses();
+        }
+        return misses;
+    }
+
+    public long getEvictions()
+    {
+        long evictions = 0;
+        for (TableStatistics table : mTables)
+        {
+            evictions += table.getEvictions();
+        }
+        return evictions;
+    }
+
+    public long getSize()
+    {
+        long size = 0;
+        for (TableStatistics table : mTables)
+        {
+            size += table.getSize();
+        }
+        return size;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append("CacheStatistics");
+        if (mDatabase != null)
+        {
+            builder.append(' ').append(mDatabase);
+        }
+        builder.append(" weight=").append(mSharedWeight).append('/').append(mCapacity);
+        builder.append(mWeighed ? " bytes" : " entities");
+        for (TableStatistics table : mTables)
+        {
+            builder.append("\n  ").append(table);
+        }
+        return builder.toString();
+    }
+}
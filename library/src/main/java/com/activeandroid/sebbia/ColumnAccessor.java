@@ -0,0 +1,310 @@
+package com.activeandroid.sebbia;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import com.activeandroid.sebbia.internal.ModelHelper;
+import com.activeandroid.sebbia.model.Ref;
+import com.activeandroid.sebbia.serializer.BlobSerializer;
+import com.activeandroid.sebbia.serializer.DoubleSerializer;
+import com.activeandroid.sebbia.serializer.LongSerializer;
+import com.activeandroid.sebbia.serializer.StringSerializer;
+import com.activeandroid.sebbia.serializer.TypeSerializer;
+import com.activeandroid.sebbia.util.Log;
+import com.activeandroid.sebbia.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes one column of a model without generated code. The storage type, serializer
+ * and enum constants are resolved once per table so the reflective path only switches on a tag.
+ */
+final class ColumnAccessor
+{
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE CONSTANTS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private static final int TYPE_UNKNOWN = 0;
+    private static final int TYPE_BYTE    = 1;
+    private static final int TYPE_SHORT   = 2;
+    private static final int TYPE_INT     = 3;
+    private static final int TYPE_LONG    = 4;
+    private static final int TYPE_FLOAT   = 5;
+    private static final int TYPE_DOUBLE  = 6;
+    private static final int TYPE_BOOLEAN = 7;
+    private static final int TYPE_CHAR    = 8;
+    private static final int TYPE_STRING  = 9;
+    private static final int TYPE_BLOB    = 10;
+    private static final int TYPE_MODEL   = 11;
+    private static final int TYPE_ENUM    = 12;
+    private static final int TYPE_REF     = 13;
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE MEMBERS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private final Field                  mField;
+    private final String                 mName;
+    private final TypeSerializer         mSerializer;
+    private final Class<?>               mStoredType;
+    private final int                    mType;
+    private final Map<String, Object>    mEnumConstants;
+    private final Class<? extends Model> mRefType;
+    private final boolean                mSpecialized;
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    ColumnAccessor(Field field, String name, TypeSerializer serializer)
+    {
+        field.setAccessible(true);
+
+        mField = field;
+        mName = name;
+        mSerializer = serializer;
+        mStoredType = serializer != null ? serializer.getSerializedType() : field.getType();
+        mType = getType(mStoredType);
+        mSpecialized = serializer instanceof LongSerializer || serializer instanceof DoubleSerializer
+                || serializer instanceof StringSerializer || serializer instanceof BlobSerializer;
+
+        if (mType == TYPE_ENUM)
+        {
+            Object[] constants = mStoredType.getEnumConstants();
+            mEnumConstants = new HashMap<String, Object>(constants.length * 2);
+            for (Object constant : constants)
+            {
+                mEnumConstants.put(((Enum<?>) constant).name(), constant);
+            }
+        }
+        else
+        {
+            mEnumConstants = null;
+        }
+
+        mRefType = mType == TYPE_REF ? ReflectionUtils.getRefType(field) : null;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PACKAGE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    String getName()
+    {
+        return mName;
+    }
+
+    /**
+     * Sets the field from a column that is not null. Values that cannot be read leave the field
+     * untouched.
+     */
+    void load(Model model, String database, Cursor cursor, int columnIndex) throws IllegalAccessException
+    {
+        Object value;
+        if (mSpecialized)
+        {
+            value = ModelHelper.getSerializable(cursor, mSerializer, columnIndex);
+            if (value != null)
+            {
+                mField.set(model, value);
+            }
+            return;
+        }
+
+        switch (mType)
+        {
+            case TYPE_BYTE:
+                value = (byte) cursor.getInt(columnIndex);
+                break;
+            case TYPE_SHORT:
+                value = cursor.getShort(columnIndex);
+                break;
+            case TYPE_INT:
+                value = cursor.getInt(columnIndex);
+                break;
+            case TYPE_LONG:
+                value = cursor.getLong(columnIndex);
+                break;
+            case TYPE_FLOAT:
+                value = cursor.getFloat(columnIndex);
+                break;
+            case TYPE_DOUBLE:
+                value = cursor.getDouble(columnIndex);
+                break;
+            case TYPE_BOOLEAN:
+                value = cursor.getInt(columnIndex) != 0;
+                break;
+            case TYPE_CHAR:
+                value = cursor.getString(columnIndex).charAt(0);
+                break;
+            case TYPE_STRING:
+                value = cursor.getString(columnIndex);
+                break;
+            case TYPE_BLOB:
+                value = cursor.getBlob(columnIndex);
+                break;
+            case TYPE_MODEL:
+                value = ModelHelper.getModel(database, cursor, mStoredType, columnIndex);
+                break;
+            case TYPE_ENUM:
+                value = mEnumConstants.get(cursor.getString(columnIndex));
+                break;
+            case TYPE_REF:
+                value = Ref.of(database, mRefType, cursor.getLong(columnIndex));
+                break;
+            default:
+                value = null;
+                break;
+        }
+
+        if (mSerializer != null)
+        {
+            value = mSerializer.deserialize(value);
+        }
+
+        if (value != null)
+        {
+            mField.set(model, value);
+        }
+    }
+
+    void fill(Model model, ContentValues values) throws IllegalAccessException
+    {
+        Object value = mField.get(model);
+        int    type  = mType;
+
+        if (mSpecialized)
+        {
+            ModelHelper.setSerializable(values, mSerializer, value, mName);
+            return;
+        }
+
+        if (value != null && mSerializer != null)
+        {
+            value = mSerializer.serialize(value);
+            if (value != null && value.getClass() != mStoredType)
+            {
+                // Serializers may declare a primitive type and return its boxed value.
+                type = getType(value.getClass());
+                if (type != mType)
+                {
+                    Log.w(String.format("TypeSerializer returned wrong type: expected a %s but got a %s",
+                            mStoredType, value.getClass()));
+                }
+            }
+        }
+
+        if (value == null)
+        {
+            values.putNull(mName);
+            return;
+        }
+
+        switch (type)
+        {
+            case TYPE_BYTE:
+                values.put(mName, (Byte) value);
+                break;
+            case TYPE_SHORT:
+                values.put(mName, (Short) value);
+                break;
+            case TYPE_INT:
+                values.put(mName, (Integer) value);
+                break;
+            case TYPE_LONG:
+                values.put(mName, (Long) value);
+                break;
+            case TYPE_FLOAT:
+                values.put(mName, (Float) value);
+                break;
+            case TYPE_DOUBLE:
+                values.put(mName, (Double) value);
+                break;
+            case TYPE_BOOLEAN:
+                values.put(mName, (Boolean) value);
+                break;
+            case TYPE_CHAR:
+            case TYPE_STRING:
+                values.put(mName, value.toString());
+                break;
+            case TYPE_BLOB:
+                values.put(mName, (byte[]) value);
+                break;
+            case TYPE_MODEL:
+                values.put(mName, ((Model) value).getId());
+                break;
+            case TYPE_ENUM:
+                values.put(mName, ((Enum<?>) value).name());
+                break;
+            case TYPE_REF:
+                values.put(mName, ((Ref<?>) value).getId());
+                break;
+            default:
+                break;
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private static int getType(Class<?> type)
+    {
+        if (type.equals(Byte.class) || type.equals(byte.class))
+        {
+            return TYPE_BYTE;
+        }
+        else if (type.equals(Short.class) || type.equals(short.class))
+        {
+            return TYPE_SHORT;
+        }
+        else if (type.equals(Integer.class) || type.equals(int.class))
+        {
+            return TYPE_INT;
+        }
+        else if (type.equals(Long.class) || type.equals(long.class))
+        {
+            return TYPE_LONG;
+        }
+        else if (type.equals(Float.class) || type.equals(float.class))
+        {
+            return TYPE_FLOAT;
+        }
+        else if (type.equals(Double.class) || type.equals(double.class))
+        {
+            return TYPE_DOUBLE;
+        }
+        else if (type.equals(Boolean.class) || type.equals(boolean.class))
+        {
+            return TYPE_BOOLEAN;
+        }
+        else if (type.equals(Character.class) || type.equals(char.class))
+        {
+            return TYPE_CHAR;
+        }
+        else if (type.equals(String.class))
+        {
+            return TYPE_STRING;
+        }
+        else if (type.equals(Byte[].class) || type.equals(byte[].class))
+        {
+            return TYPE_BLOB;
+        }
+        else if (ReflectionUtils.isModel(type))
+        {
+            return TYPE_MODEL;
+        }
+        else if (ReflectionUtils.isSubclassOf(type, Enum.class))
+        {
+            return TYPE_ENUM;
+        }
+        else if (ReflectionUtils.isRef(type))
+        {
+            return TYPE_REF;
+        }
+        return TYPE_UNKNOWN;
+    }
+}
@@ -22,6 +22,8 @@ import java.util.List;
 
 import android.content.Context;
 
+import com.activeandroid.sebbia.internal.ModelRegistry;
+import com.activeandroid.sebbia.query.QueryCache;
 import com.activeandroid.sebbia.serializer.TypeSerializer;
 import com.activeandroid.sebbia.util.Log;
 import com.activeandroid.sebbia.util.ReflectionUtils;
@@ -43,6 +45,11 @@ public class Configuration
     private List<Class<? extends Model>>          mModelClasses;
     private List<Class<? extends TypeSerializer>> mTypeSerializers;
     private int                                   mCacheSize;
+    private long                                  mCacheMemorySize;
+    private int                                   mQueryCacheSize;
+    private String                                mModelRegistry;
+    private boolean                               mLazyInitialization;
+    private int                                   mSaveChunkSize;
 
     //////////////////////////////////////////////////////////////////////////////////////
     // CONSTRUCTORS
@@ -92,6 +99,47 @@ public class Configuration
         return mCacheSize;
     }
 
+    /**
+     * @return the entity cache budget in bytes, or 0 if the cache is limited by
+     * {@link #getCacheSize()} entities instead.
+     */
+    public long getCacheMemorySize()
+    {
+        return mCacheMemorySize;
+    }
+
+    public int getQueryCacheSize()
+    {
+        return mQueryCacheSize;
+    }
+
+    /**
+     * @return class name of the model registry generated by the annotation processor.
+     */
+    public String getModelRegistry()
+    {
+        return mModelRegistry;
+    }
+
+    /**
+     * @return true if table metadata and model fillers are built on first use instead of
+     * during initialization.
+     */
+    public boolean isLazyInitialization()
+    {
+        return mLazyInitialization;
+    }
+
+    /**
+     * @return number of entities {@link Model#saveMultiple(String, java.util.List)} and
+     * {@link Model#deleteMultiple(String, java.util.List)} write per transaction, 0 to write
+     * the whole batch in one transaction.
+     */
+    public int getSaveChunkSize()
+    {
+        return mSaveChunkSize;
+    }
+
     public boolean isValid()
     {
         return mModelClasses != null && mModelClasses.size() > 0;
@@ -112,8 +160,10 @@ public class Configuration
         private final static String AA_MODELS      = "AA_MODELS";
         private final static String AA_SERIALIZERS = "AA_SERIALIZERS";
         private final static String AA_SQL_PARSER  = "AA_SQL_PARSER";
+        private final static String AA_REGISTRY    = "AA_REGISTRY";
 
         private static final int    DEFAULT_CACHE_SIZE = 1024;
+        private static final int    DEFAULT_SAVE_CHUNK_SIZE = 500;
         private static final String DEFAULT_DB_NAME    = "Application.db";
         private static final String DEFAULT_SQL_PARSER = SQL_PARSER_LEGACY;
 
@@ -124,6 +174,11 @@ public class Configuration
         private Context mContext;
 
         private Integer                               mCacheSize;
+        private long                                  mCacheMemorySize;
+        private int                                   mQueryCacheSize;
+        private String                                mModelRegistry;
+        private boolean                               mLazyInitialization;
+        private int                                   mSaveChunkSize;
         private String                                mDatabaseName;
         private Integer                               mDatabaseVersion;
         private String                                mSqlParser;
@@ -138,6 +193,8 @@ public class Configuration
         {
             mContext = context.getApplicationContext();
             mCacheSize = DEFAULT_CACHE_SIZE;
+            mQueryCacheSize = QueryCache.DEFAULT_SIZE;
+            mSaveChunkSize = DEFAULT_SAVE_CHUNK_SIZE;
         }
 
         //////////////////////////////////////////////////////////////////////////////////////
@@ -150,6 +207,64 @@ public class Configuration
             return this;
         }
 
+        /**
+         * Limits the entity cache by the estimated heap its entities use instead of their
+         * count. Entities are weighed by the size estimators generated for their models, so
+         * a few rows with large blobs take as much room as many small rows.
+         *
+         * @param bytes cache budget, 0 to fall back to {@link #setCacheSize(int)}.
+         */
+        public Builder setCacheMemorySize(long bytes)
+        {
+            mCacheMemorySize = bytes;
+            return this;
+        }
+
+        /**
+         * @param queryCacheSize number of query results kept for queries marked with
+         *                       {@link com.activeandroid.sebbia.query.From#cache()}.
+         */
+        public Builder setQueryCacheSize(int queryCacheSize)
+        {
+            mQueryCacheSize = queryCacheSize;
+            return this;
+        }
+
+        /**
+         * @param className class name of the generated model registry, only needed if the
+         *                  annotation processor was told to write it to another package.
+         */
+        public Builder setModelRegistry(String className)
+        {
+            mModelRegistry = className;
+            return this;
+        }
+
+        /**
+         * Builds the metadata and filler of a model the first time it is used rather than
+         * for all models at once in {@link ActiveAndroid#initialize(Configuration)}. Schema
+         * creation and migrations still see every table.
+         */
+        public Builder setLazyInitialization(boolean lazy)
+        {
+            mLazyInitialization = lazy;
+            return this;
+        }
+
+        /**
+         * Batch saves and deletes run in a transaction that yields every {@code chunkSize}
+         * entities, committing the rows written so far when another thread waits for the
+         * database, so long batches do not keep it waiting until the last row is written.
+         * Batches started inside an open transaction join it instead.
+         *
+         * @param chunkSize entities between yields, 0 to hold the transaction for the whole batch.
+         */
+        public Builder setSaveChunkSize(int chunkSize)
+        {
+            mSaveChunkSize = chunkSize;
+            return this;
+        }
+
         public Builder setDatabaseName(String databaseName)
         {
             mDatabaseName = databaseName;
@@ -228,6 +343,10 @@ public class Configuration
         {
             Configuration configuration = new Configuration(mContext);
             configuration.mCacheSize = mCacheSize;
+            configuration.mCacheMemorySize = mCacheMemorySize;
+            configuration.mQueryCacheSize = mQueryCacheSize;
+            configuration.mLazyInitialization = mLazyInitialization;
+            configuration.mSaveChunkSize = mSaveChunkSize;
 
             // Get database name from meta-data
             if (mDatabaseName != null)
@@ -259,6 +378,17 @@ public class Configuration
                 configuration.mSqlParser = getMetaDataSqlParserOrDefault();
             }
 
+            // Get model registry from meta-data
+            if (mModelRegistry != null)
+            {
+                configuration.mModelRegistry = mModelRegistry;
+            }
+            else
+            {
+                final String registry = ReflectionUtils.getMetaData(mContext, AA_REGISTRY);
+                configuration.mModelRegistry = registry != null ? registry : ModelRegistry.DEFAULT_CLASS_NAME;
+            }
+
             // Get model classes from meta-data
             if (mModelClasses != null)
             {
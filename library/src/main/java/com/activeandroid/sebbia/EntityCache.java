@@ -0,0 +1,239 @@
+package com.activeandroid.sebbia;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.activeandroid.sebbia.annotation.Table.CachePolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Entity identity map of a single database, sharded by table.
+ * <p/>
+ * Lookups only touch the stripe of the requested table that owns the id. The capacity is
+ * shared between all tables, when it is exceeded the table being written gives up its least
+ * recently used entities as long as it holds at least its fair share, otherwise the largest
+ * table does. A bulk scan of one table therefore recycles its own entries instead of
+ * flushing the rest of the cache.
+ * <p/>
+ * The capacity is either a number of entities or, when the cache is weighed, a number of
+ * bytes as estimated by {@link Cache#estimateSize(Model)}.
+ * <p/>
+ * Tables may opt out of the shared budget with {@link CachePolicy}: LRU and SOFT tables
+ * are bounded by their own capacity, PINNED tables are never evicted and NONE tables only
+ * keep statistics.
+ */
+final class EntityCache
+{
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE CONSTANTS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private static final int MAX_STRIPES = 16;
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE MEMBERS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private final String  mDatabase;
+    private final long    mCapacity;
+    private final boolean mWeighed;
+    private final int     mStripes;
+
+    private final AtomicLong    mWeight       = new AtomicLong();
+    private final AtomicInteger mSharedTables = new AtomicInteger();
+
+    private final ConcurrentHashMap<Class<? extends Model>, TableCache> mTables = new ConcurrentHashMap<Class<? extends Model>, TableCache>();
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    EntityCache(String database, long capacity, boolean weighed)
+    {
+        mDatabase = database;
+        mCapacity = capacity;
+        mWeighed = weighed;
+
+        int stripes = 1;
+        int processors = Runtime.getRuntime().availableProcessors();
+        while (stripes < processors * 2 && stripes < MAX_STRIPES)
+        {
+            stripes <<= 1;
+        }
+        mStripes = stripes;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    public Model get(Class<? extends Model> type, long id)
+    {
+        // Created on lookup as well so misses of a table are counted before its first put.
+        return getTable(type).get(id);
+    }
+
+    public void put(Model entity)
+    {
+        put(entity, -1);
+    }
+
+    /**
+     * @param loadNanos time spent hydrating the entity from a cursor, -1 if not loaded.
+     */
+    public void put(Model entity, long loadNanos)
+    {
+        Long id = entity.getId();
+        if (id == null || mCapacity <= 0)
+        {
+            return;
+        }
+
+        TableCache table = getTable(entity.getClass());
+
+        // Private capacities are counted in entities, only the shared budget may be in bytes.
+        int weight = mWeighed && table.isShared() ? Math.max(1, Cache.estimateSize(entity)) : 1;
+
+        long delta = table.put(id, entity, weight, loadNanos);
+        if (!table.isShared())
+        {
+            table.trim(id);
+        }
+        else if (mWeight.addAndGet(delta) > mCapacity)
+        {
+            trim(table, id);
+        }
+    }
+
+    public void remove(Model entity)
+    {
+        Long id = entity.getId();
+        if (id == null)
+        {
+            return;
+        }
+
+        TableCache table = mTables.get(entity.getClass());
+        if (table != null)
+        {
+            int weight = table.remove(id);
+            if (table.isShared())
+            {
+                mWeight.addAndGet(-weight);
+            }
+        }
+    }
+
+    public void clear()
+    {
+        for (TableCache table : mTables.values())
+        {
+            long weight = table.clear();
+            if (table.isShared())
+            {
+                mWeight.addAndGet(-weight);
+            }
+        }
+    }
+
+    public long weight()
+    {
+        return mWeight.get();
+    }
+
+    public CacheStatistics getStatistics()
+    {
+        List<TableStatistics> tables = new ArrayList<TableStatistics>(mTables.size());
+        for (TableCache table : mTables.values())
+        {
+            tables.add(table.getStatistics());
+        }
+
+        return new CacheStatistics(mDatabase, mCapacity, mWeighed, mWeight.get(), tables);
+    }
+
+    public void resetStatistics()
+    {
+        for (TableCache table : mTables.values())
+        {
+            table.resetStatistics();
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private TableCache getTable(Class<? extends Model> type)
+    {
+        TableCache table = mTables.get(type);
+        if (table == null)
+        {
+            TableInfo tableInfo = Cache.getTableInfo(type);
+            CachePolicy policy = tableInfo != null ? tableInfo.getCachePolicy() : CachePolicy.DEFAULT;
+
+            int capacity = tableInfo != null ? tableInfo.getCacheSize() : 0;
+            if (policy == CachePolicy.LRU && capacity <= 0)
+            {
+                // Without a size of its own an LRU table holds at most the shared capacity.
+                capacity = (int) Math.min(Integer.MAX_VALUE, mCapacity);
+            }
+
+            TableCache created = new TableCache(type, policy, capacity, mStripes);
+            table = mTables.putIfAbsent(type, created);
+            if (table == null)
+            {
+                table = created;
+                if (created.isShared())
+                {
+                    mSharedTables.incrementAndGet();
+                }
+            }
+        }
+
+        return table;
+    }
+
+    private void trim(TableCache preferred, long hint)
+    {
+        while (mWeight.get() > mCapacity)
+        {
+            TableCache victim = preferred;
+            if (preferred.weight() * mSharedTables.get() < mCapacity)
+            {
+                for (TableCache table : mTables.values())
+                {
+                    if (table.isShared() && table.weight() > victim.weight())
+                    {
+                        victim = table;
+                    }
+                }
+            }
+
+            int weight = victim.evict(hint);
+            if (weight == 0)
+            {
+                return;
+            }
+            mWeight.addAndGet(-weight);
+        }
+    }
+}
@@ -19,23 +19,24 @@ package com.activeandroid.sebbia;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteStatement;
 
 import com.activeandroid.sebbia.content.ContentProvider;
+import com.activeandroid.sebbia.internal.ColumnPlan;
 import com.activeandroid.sebbia.internal.ModelFiller;
-import com.activeandroid.sebbia.internal.ModelHelper;
 import com.activeandroid.sebbia.model.ManyToManyRelation;
 import com.activeandroid.sebbia.model.OneToManyRelation;
 import com.activeandroid.sebbia.query.Delete;
 import com.activeandroid.sebbia.query.Select;
-import com.activeandroid.sebbia.serializer.TypeSerializer;
 import com.activeandroid.sebbia.util.Log;
-import com.activeandroid.sebbia.util.ReflectionUtils;
+import com.activeandroid.sebbia.util.SQLiteUtils;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
 
 @SuppressWarnings("unchecked")
 public abstract class Model implements IModel
@@ -55,6 +56,9 @@ public abstract class Model implements IModel
     private final TableInfo mTableInfo;
     private final String    idName;
 
+    // Column values as last loaded or saved, only kept for tables that track changes.
+    private ContentValues mSnapshot;
+
     // ////////////////////////////////////////////////////////////////////////////////////
     // CONSTRUCTORS
     // ////////////////////////////////////////////////////////////////////////////////////
@@ -72,6 +76,7 @@ public abstract class Model implements IModel
     public final void clearId()
     {
         mId = null;
+        mSnapshot = null;
     }
 
     public final Long getId()
@@ -82,7 +87,8 @@ public abstract class Model implements IModel
     public final void delete(String database)
     {
         Cache.openDatabase(database).delete(mTableInfo.getTableName(), idName + "=?", new String[]{getId().toString()});
-        Cache.removeEntity(this);
+        Cache.removeEntity(database, this);
+        Cache.invalidateQueries(mTableInfo.getType());
 
         Cache.getContext().getContentResolver()
                 .notifyChange(ContentProvider.createUri(mTableInfo.getType(), mId), null);
@@ -92,16 +98,36 @@ public abstract class Model implements IModel
     {
         SQLiteDatabase db     = Cache.openDatabase(database);
         ContentValues  values = new ContentValues();
-        fillContentValues(this, values);
 
         if (mId == null)
         {
+            fillContentValues(this, values);
             mId = db.insert(mTableInfo.getTableName(), null, values);
+            if (mTableInfo.isTrackChanges())
+            {
+                mSnapshot = values;
+            }
         }
-        else
+        else if (!update(database, db, this, values))
         {
-            db.update(mTableInfo.getTableName(), values, idName + "=" + mId, null);
+            // Nothing changed since the entity was loaded or saved.
+            return mId;
         }
+        Cache.invalidateQueries(mTableInfo.getType());
+
+        Cache.getContext().getContentResolver()
+                .notifyChange(ContentProvider.createUri(mTableInfo.getType(), mId), null);
+        return mId;
+    }
+
+    /**
+     * Inserts the entity, or updates the row with the same unique column or unique group and takes
+     * over its id.
+     */
+    public final Long upsert(String database)
+    {
+        upsert(database, Cache.openDatabase(database), this, new ContentValues());
+        Cache.invalidateQueries(mTableInfo.getType());
 
         Cache.getContext().getContentResolver()
                 .notifyChange(ContentProvider.createUri(mTableInfo.getType(), mId), null);
@@ -118,7 +144,7 @@ public abstract class Model implements IModel
 
     public static <T extends Model> T load(String database, Class<T> type, long id)
     {
-        T model = (T) Cache.getEntity(type, id);
+        T model = (T) Cache.getEntity(database, type, id);
         if (model == null)
         {
             TableInfo tableInfo = Cache.getTableInfo(type);
@@ -127,56 +153,479 @@ public abstract class Model implements IModel
         return model;
     }
 
-    public static void saveMultiple(String database, List<? extends Model> entities)
+    /**
+     * Saves the entities in one transaction that yields to waiting threads every
+     * {@link Configuration#getSaveChunkSize()} entities. Joins the transaction of the caller if
+     * there is one. Consecutive new entities of a generated model are inserted several rows per
+     * statement where the table allows it.
+     */
+    public static void saveMultiple(final String database, List<? extends Model> entities)
     {
         final SQLiteDatabase db     = Cache.openDatabase(database);
         final ContentValues  values = new ContentValues();
-        for (Model entity : entities)
+
+        writeBatch(db, entities, new BatchWriter()
         {
-            values.clear();
-            if (entity.mId == null)
+            @Override
+            public int write(List<? extends Model> entities, int index, int end)
             {
-                ModelFiller filler = Cache.getFiller(entity.getClass());
-                if (filler != null)
+                Model entity = entities.get(index);
+                if (entity.mId == null)
                 {
-                    synchronized (entity.getClass())
+                    int rows = getBulkInsertRun(entities, index, end);
+                    if (rows > 1)
                     {
-                        SQLiteStatement statement = entity.mTableInfo.getInsertOrReplaceStatement(database);
-                        statement.clearBindings();
-                        filler.bindStatement(entity, statement, entity.mTableInfo.getColumnIndexes());
-                        entity.mId = statement.executeInsert();
+                        insertBulk(database, entities.subList(index, index + rows));
+                        Cache.invalidateQueries(entity.mTableInfo.getType());
+                        return rows;
                     }
                 }
-                else
+
+                values.clear();
+                if (entity.mId == null)
+                {
+                    ModelFiller filler = Cache.getFiller(entity.getClass());
+                    if (filler != null)
+                    {
+                        synchronized (entity.getClass())
+                        {
+                            SQLiteStatement statement = entity.mTableInfo.getInsertOrReplaceStatement(database);
+                            statement.clearBindings();
+                            filler.bindStatement(entity, statement, entity.mTableInfo.getColumnIndexes());
+                            entity.mId = statement.executeInsert();
+                        }
+                    }
+                    else
+                    {
+                        entity.fillContentValuesReflective(values);
+                        entity.mId = db.insert(entity.mTableInfo.getTableName(), null, values);
+                    }
+                    if (entity.mTableInfo.isTrackChanges())
+                    {
+                        entity.takeSnapshot();
+                    }
+                }
+                else if (!update(database, db, entity, values))
+                {
+                    return 1;
+                }
+                Cache.invalidateQueries(entity.mTableInfo.getType());
+                return 1;
+            }
+        });
+    }
+
+    /**
+     * Counts the new entities of the same generated model starting at {@code from} that fit into
+     * one multi-row insert.
+     */
+    private static int getBulkInsertRun(List<? extends Model> entities, int from, int to)
+    {
+        Model first = entities.get(from);
+        int   limit = Math.min(to, from + first.mTableInfo.getBulkInsertRows());
+        if (limit - from < 2 || Cache.getFiller(first.getClass()) == null)
+        {
+            return 1;
+        }
+
+        int end = from + 1;
+        while (end < limit)
+        {
+            Model entity = entities.get(end);
+            if (entity.getClass() != first.getClass() || entity.mId != null)
+            {
+                break;
+            }
+            end++;
+        }
+        return end - from;
+    }
+
+    /**
+     * Inserts new entities of one generated model with a single statement. Rows of one insert
+     * get consecutive ids, so the ids are counted back from the id of the last row.
+     */
+    private static void insertBulk(String database, List<? extends Model> entities)
+    {
+        Model       first     = entities.get(0);
+        TableInfo   tableInfo = first.mTableInfo;
+        ModelFiller filler    = Cache.getFiller(first.getClass());
+        int         rows      = entities.size();
+
+        long lastId;
+        synchronized (first.getClass())
+        {
+            SQLiteStatement statement = rows == tableInfo.getBulkInsertRows()
+                    ? tableInfo.getBulkInsertStatement(database)
+                    : Cache.openDatabase(database).compileStatement(SQLiteUtils.createInsertStatement("INSERT OR REPLACE INTO ", tableInfo, rows));
+            try
+            {
+                statement.clearBindings();
+                for (int i = 0; i < rows; i++)
+                {
+                    filler.bindStatement(entities.get(i), statement, tableInfo.getColumnIndexes(i));
+                }
+                lastId = statement.executeInsert();
+            }
+            finally
+            {
+                if (rows != tableInfo.getBulkInsertRows())
+                {
+                    statement.close();
+                }
+            }
+        }
+
+        for (int i = 0; i < rows; i++)
+        {
+            Model entity = entities.get(i);
+            entity.mId = lastId == -1 ? -1 : lastId - rows + 1 + i;
+            if (tableInfo.isTrackChanges())
+            {
+                entity.takeSnapshot();
+            }
+        }
+    }
+
+    /**
+     * Deletes the saved entities in one transaction that yields to waiting threads every
+     * {@link Configuration#getSaveChunkSize()} entities. Joins the transaction of the caller if
+     * there is one.
+     */
+    public static void deleteMultiple(final String database, List<? extends Model> entities)
+    {
+        writeBatch(Cache.openDatabase(database), entities, new BatchWriter()
+        {
+            @Override
+            public int write(List<? extends Model> entities, int index, int end)
+            {
+                Model entity = entities.get(index);
+                if (entity.mId == null)
+                {
+                    return 1;
+                }
+
+                synchronized (entity.getClass())
+                {
+                    SQLiteStatement statement = entity.mTableInfo.getDeleteStatement(database);
+                    statement.bindLong(1, entity.mId);
+                    statement.executeUpdateDelete();
+                }
+                Cache.removeEntity(database, entity);
+                Cache.invalidateQueries(entity.mTableInfo.getType());
+                return 1;
+            }
+        });
+    }
+
+    /**
+     * Upserts the entities like {@link #upsert(String)} in one transaction that yields to waiting threads every
+     * {@link Configuration#getSaveChunkSize()} entities. Joins the transaction of the caller if
+     * there is one.
+     */
+    public static void upsertMultiple(final String database, List<? extends Model> entities)
+    {
+        final SQLiteDatabase db     = Cache.openDatabase(database);
+        final ContentValues  values = new ContentValues();
+
+        writeBatch(db, entities, new BatchWriter()
+        {
+            @Override
+            public int write(List<? extends Model> entities, int index, int end)
+            {
+                Model entity = entities.get(index);
+                upsert(database, db, entity, values);
+                Cache.invalidateQueries(entity.mTableInfo.getType());
+                return 1;
+            }
+        });
+    }
+
+    /**
+     * Runs the writer over the entities in one transaction that yields to waiting threads every
+     * {@link Configuration#getSaveChunkSize()} entities. In a transaction of the caller the
+     * entities are written without yielding, so the caller's transaction is never committed
+     * halfway.
+     */
+    private static void writeBatch(SQLiteDatabase db, List<? extends Model> entities, BatchWriter writer)
+    {
+        final boolean transaction = !db.inTransaction();
+        final int     chunkSize   = transaction ? Cache.getSaveChunkSize() : 0;
+
+        List<? extends Model> list = entities instanceof RandomAccess ? entities : new ArrayList<Model>(entities);
+        int size    = list.size();
+        int written = 0;
+        int commit  = chunkSize > 0 ? chunkSize : size;
+        if (transaction)
+        {
+            db.beginTransaction();
+        }
+        try
+        {
+            while (written < size)
+            {
+                if (written >= commit)
                 {
-                    entity.fillContentValuesReflective(values);
-                    entity.mId = db.insert(entity.mTableInfo.getTableName(), null, values);
+                    db.yieldIfContendedSafely();
+                    commit = written + chunkSize;
                 }
+                written += writer.write(list, written, Math.min(commit, size));
+            }
+
+            if (transaction)
+            {
+                db.setTransactionSuccessful();
+            }
+        }
+        finally
+        {
+            if (transaction)
+            {
+                db.endTransaction();
+            }
+        }
+    }
+
+    /**
+     * Inserts the entity with a compiled INSERT ... ON CONFLICT DO UPDATE and reads back the id
+     * of the written row by its key. On SQLite before 3.24 the row is looked up first. A saved
+     * entity is written to its own row by its id. The written entity is put into the entity cache.
+     */
+    private static void upsert(String database, SQLiteDatabase db, Model entity, ContentValues values)
+    {
+        TableInfo tableInfo = entity.mTableInfo;
+        String[]  key       = tableInfo.getUniqueKey();
+        if (key == null)
+        {
+            throw new IllegalArgumentException(entity.getClass().getSimpleName() + " has no unique column to upsert on");
+        }
+
+        values.clear();
+        fillContentValues(entity, values);
+        values.remove(entity.idName);
+
+        boolean nullKey = false;
+        for (String column : key)
+        {
+            nullKey |= values.get(column) == null;
+        }
+
+        String table = tableInfo.getTableName();
+        synchronized (entity.getClass())
+        {
+            if (entity.mId != null)
+            {
+                // The row of a saved entity is updated even when its key changed.
+                if (updateById(database, db, entity, values) == 0)
+                {
+                    values.put(entity.idName, entity.mId);
+                    db.insert(table, null, values);
+                }
+            }
+            else if (nullKey)
+            {
+                // Null keys never conflict.
+                entity.mId = db.insert(table, null, values);
+            }
+            else if (SQLiteUtils.isUpsertSupported(db))
+            {
+                SQLiteStatement statement = tableInfo.getUpsertStatement(database);
+                statement.clearBindings();
+                for (Map.Entry<String, Integer> column : tableInfo.getColumnIndexes().entrySet())
+                {
+                    SQLiteUtils.bindObject(statement, column.getValue(), values.get(column.getKey()));
+                }
+                statement.executeInsert();
+                // An update does not report the id of the row it changed.
+                entity.mId = queryUniqueKey(database, tableInfo, values);
             }
             else
             {
-                fillContentValues(entity, values);
-                db.update(entity.mTableInfo.getTableName(), values, "Id=" + entity.mId, null);
+                long id = queryUniqueKey(database, tableInfo, values);
+                if (id == -1)
+                {
+                    entity.mId = db.insert(table, null, values);
+                }
+                else
+                {
+                    entity.mId = id;
+                    updateById(database, db, entity, values);
+                }
             }
         }
+
+        Cache.addEntity(database, entity);
+        if (tableInfo.isTrackChanges())
+        {
+            entity.takeSnapshot();
+        }
+    }
+
+    /**
+     * Writes every column of a saved entity to the row with its id, through the compiled update
+     * when the model has a generated filler.
+     *
+     * @return number of rows written.
+     */
+    private static int updateById(String database, SQLiteDatabase db, Model entity, ContentValues values)
+    {
+        TableInfo            tableInfo = entity.mTableInfo;
+        ModelFiller          filler    = Cache.getFiller(entity.getClass());
+        Map<String, Integer> columns   = tableInfo.getUpdateColumnIndexes();
+        if (filler != null)
+        {
+            SQLiteStatement statement = tableInfo.getUpdateStatement(database);
+            statement.clearBindings();
+            filler.bindUpdateStatement(entity, statement, columns, entity.idName);
+            return statement.executeUpdateDelete();
+        }
+        return db.update(tableInfo.getTableName(), values, entity.idName + "=?", new String[]{entity.mId.toString()});
+    }
+
+    /**
+     * @return id of the row with the unique key in the values, -1 if there is none.
+     */
+    private static long queryUniqueKey(String database, TableInfo tableInfo, ContentValues values)
+    {
+        String[]        key       = tableInfo.getUniqueKey();
+        SQLiteStatement statement = tableInfo.getUniqueKeyQuery(database);
+        statement.clearBindings();
+        for (int i = 0; i < key.length; i++)
+        {
+            SQLiteUtils.bindObject(statement, i + 1, values.get(key[i]));
+        }
+
+        try
+        {
+            return statement.simpleQueryForLong();
+        }
+        catch (SQLiteDoneException e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Writes the columns of an existing entity, returns false when nothing had to be written.
+     */
+    private static boolean update(String database, SQLiteDatabase db, Model entity, ContentValues values)
+    {
+        TableInfo tableInfo = entity.mTableInfo;
+        if (tableInfo.isTrackChanges() && entity.mSnapshot != null)
+        {
+            return updateChanges(db, entity, values);
+        }
+
+        ModelFiller filler = Cache.getFiller(entity.getClass());
+        if (filler != null)
+        {
+            Map<String, Integer> columns = tableInfo.getUpdateColumnIndexes();
+            if (columns.size() == 1)
+            {
+                // Nothing to update besides the id.
+                return false;
+            }
+
+            synchronized (entity.getClass())
+            {
+                SQLiteStatement statement = tableInfo.getUpdateStatement(database);
+                statement.clearBindings();
+                filler.bindUpdateStatement(entity, statement, columns, entity.idName);
+                statement.executeUpdateDelete();
+            }
+        }
+        else
+        {
+            fillContentValues(entity, values);
+            db.update(tableInfo.getTableName(), values, entity.idName + "=?", new String[]{entity.mId.toString()});
+        }
+
+        if (tableInfo.isTrackChanges())
+        {
+            entity.takeSnapshot();
+        }
+        return true;
+    }
+
+    private static boolean updateChanges(SQLiteDatabase db, Model entity, ContentValues values)
+    {
+        fillContentValues(entity, values);
+
+        ContentValues changes = new ContentValues(values);
+        for (Map.Entry<String, Object> value : values.valueSet())
+        {
+            String column = value.getKey();
+            if (entity.mSnapshot.containsKey(column) && isEqual(entity.mSnapshot.get(column), value.getValue()))
+            {
+                changes.remove(column);
+            }
+        }
+
+        if (changes.size() == 0)
+        {
+            return false;
+        }
+
+        db.update(entity.mTableInfo.getTableName(), changes, entity.idName + "=?", new String[]{entity.mId.toString()});
+        entity.mSnapshot = new ContentValues(values);
+        return true;
+    }
+
+    private static boolean isEqual(Object previous, Object current)
+    {
+        if (previous instanceof byte[] && current instanceof byte[])
+        {
+            return Arrays.equals((byte[]) previous, (byte[]) current);
+        }
+        return previous == null ? current == null : previous.equals(current);
+    }
+
+    private void takeSnapshot()
+    {
+        ContentValues snapshot = new ContentValues();
+        fillContentValues(this, snapshot);
+        mSnapshot = snapshot;
     }
 
     // Model population
 
     public final void loadFromCursor(String database, Cursor cursor)
     {
+        loadFromCursor(database, cursor, null);
+    }
+
+    /**
+     * Loads the current row using a plan from {@link Cache#getColumnPlan}, resolved once for all
+     * rows of the cursor. Without a plan the column indexes are looked up for this row only.
+     */
+    public final void loadFromCursor(String database, Cursor cursor, ColumnPlan plan)
+    {
+        loadFromCursor(database, cursor, plan, true);
+    }
+
+    /**
+     * @param cached false to leave the entity out of the entity cache, for rows that are only
+     *               streamed through.
+     */
+    public final void loadFromCursor(String database, Cursor cursor, ColumnPlan plan, boolean cached)
+    {
+        long start = System.nanoTime();
         ModelFiller filler = Cache.getFiller(mTableInfo.getType());
         if (filler != null)
         {
-            loadFromCursorWithFiller(cursor, filler);
+            loadFromCursorWithFiller(database, cursor, filler, plan != null ? plan : filler.createPlan(cursor, idName));
         }
         else
         {
-            loadFromCursorReflective(database, cursor);
+            loadFromCursorReflective(database, cursor, plan != null ? plan : mTableInfo.createPlan(cursor));
         }
-        if (mId != null)
+        if (mTableInfo.isTrackChanges())
         {
-            Cache.addEntity(this);
+            takeSnapshot();
+        }
+        if (cached && mId != null)
+        {
+            Cache.addEntity(database, this, System.nanoTime() - start);
         }
     }
 
@@ -201,94 +650,11 @@ public abstract class Model implements IModel
 
     private void fillContentValuesReflective(final ContentValues values)
     {
-        for (Field field : mTableInfo.getFields())
+        for (ColumnAccessor accessor : mTableInfo.getColumnAccessors())
         {
-            final String fieldName = mTableInfo.getColumnName(field);
-            Class<?> fieldType = field.getType();
-
-            field.setAccessible(true);
-
             try
             {
-                Object value = field.get(this);
-
-                if (value != null)
-                {
-                    final TypeSerializer typeSerializer = Cache.getParserForType(fieldType);
-                    if (typeSerializer != null)
-                    {
-                        // serialize data
-                        value = typeSerializer.serialize(value);
-                        // set new object type
-                        if (value != null)
-                        {
-                            fieldType = value.getClass();
-                            // check that the serializer returned what it
-                            // promised
-                            if (!fieldType.equals(typeSerializer.getSerializedType()))
-                            {
-                                Log.w(String.format("TypeSerializer returned wrong type: expected a %s but got a %s",
-                                        typeSerializer.getSerializedType(), fieldType));
-                            }
-                        }
-                    }
-                }
-
-                // TODO: Find a smarter way to do this? This if block is
-                // necessary because we
-                // can't know the type until runtime.
-                if (value == null)
-                {
-                    values.putNull(fieldName);
-                }
-                else if (fieldType.equals(Byte.class) || fieldType.equals(byte.class))
-                {
-                    values.put(fieldName, (Byte) value);
-                }
-                else if (fieldType.equals(Short.class) || fieldType.equals(short.class))
-                {
-                    values.put(fieldName, (Short) value);
-                }
-                else if (fieldType.equals(Integer.class) || fieldType.equals(int.class))
-                {
-                    values.put(fieldName, (Integer) value);
-                }
-                else if (fieldType.equals(Long.class) || fieldType.equals(long.class))
-                {
-                    values.put(fieldName, (Long) value);
-                }
-                else if (fieldType.equals(Float.class) || fieldType.equals(float.class))
-                {
-                    values.put(fieldName, (Float) value);
-                }
-                else if (fieldType.equals(Double.class) || fieldType.equals(double.class))
-                {
-                    values.put(fieldName, (Double) value);
-                }
-                else if (fieldType.equals(Boolean.class) || fieldType.equals(boolean.class))
-                {
-                    values.put(fieldName, (Boolean) value);
-                }
-                else if (fieldType.equals(Character.class) || fieldType.equals(char.class))
-                {
-                    values.put(fieldName, value.toString());
-                }
-                else if (fieldType.equals(String.class))
-                {
-                    values.put(fieldName, value.toString());
-                }
-                else if (fieldType.equals(Byte[].class) || fieldType.equals(byte[].class))
-                {
-                    values.put(fieldName, (byte[]) value);
-                }
-                else if (ReflectionUtils.isModel(fieldType))
-                {
-                    values.put(fieldName, ((Model) value).getId());
-                }
-                else if (ReflectionUtils.isSubclassOf(fieldType, Enum.class))
-                {
-                    values.put(fieldName, ((Enum<?>) value).name());
-                }
+                accessor.fill(this, values);
             }
             catch (IllegalArgumentException e)
             {
@@ -301,10 +667,10 @@ public abstract class Model implements IModel
         }
     }
 
-    private void loadFromCursorWithFiller(Cursor cursor, ModelFiller filler)
+    private void loadFromCursorWithFiller(String database, Cursor cursor, ModelFiller filler, ColumnPlan plan)
     {
-        int columnIndex = cursor.getColumnIndex(idName);
-        if (cursor.isNull(columnIndex) == false)
+        int columnIndex = plan.idIndex;
+        if (columnIndex != -1 && cursor.isNull(columnIndex) == false)
         {
             mId = cursor.getLong(columnIndex);
         }
@@ -312,74 +678,24 @@ public abstract class Model implements IModel
         {
             mId = null;
         }
-        filler.loadFromCursor(this, cursor);
+        filler.loadFromCursor(database, this, cursor, plan);
     }
 
-    private void loadFromCursorReflective(String database, Cursor cursor)
+    private void loadFromCursorReflective(String database, Cursor cursor, ColumnPlan plan)
     {
-        /**
-         * Obtain the columns ordered to fix issue #106
-         * (https://github.com/pardom/ActiveAndroid/issues/106) when the cursor
-         * have multiple columns with same name obtained from join tables.
-         */
-        List<String> columnsOrdered = new ArrayList<String>(Arrays.asList(cursor.getColumnNames()));
-        for (Field field : mTableInfo.getFields())
+        ColumnAccessor[] accessors = mTableInfo.getColumnAccessors();
+        int[]            indexes   = plan.indexes;
+        for (int i = 0; i < accessors.length; i++)
         {
-            final String fieldName = mTableInfo.getColumnName(field);
-            Class<?> fieldType = field.getType();
-            final int columnIndex = columnsOrdered.indexOf(fieldName);
-
-            if (columnIndex < 0)
+            final int columnIndex = indexes[i];
+            if (columnIndex < 0 || cursor.isNull(columnIndex))
             {
                 continue;
             }
 
-            field.setAccessible(true);
-
             try
             {
-                boolean columnIsNull = cursor.isNull(columnIndex);
-                TypeSerializer typeSerializer = Cache.getParserForType(fieldType);
-                Object value = null;
-
-                if (typeSerializer != null)
-                {
-                    fieldType = typeSerializer.getSerializedType();
-                }
-
-                if (columnIsNull)
-                {
-                    field = null;
-                }
-                else
-                {
-                    value = ModelHelper.getValueFromCursor(cursor, fieldType, columnIndex);
-                }
-
-                if (value == null)
-                {
-                    if (ReflectionUtils.isModel(fieldType))
-                    {
-                        value = ModelHelper.getModel(database, cursor, fieldType, columnIndex);
-                    }
-                    else if (ReflectionUtils.isSubclassOf(fieldType, Enum.class))
-                    {
-                        @SuppressWarnings("rawtypes")
-                        final Class<? extends Enum> enumType = (Class<? extends Enum>) fieldType;
-                        value = Enum.valueOf(enumType, cursor.getString(columnIndex));
-                    }
-                }
-                // Use a deserializer if one is available
-                if (typeSerializer != null && !columnIsNull)
-                {
-                    value = typeSerializer.deserialize(value);
-                }
-
-                // Set the field value
-                if (value != null)
-                {
-                    field.set(this, value);
-                }
+                accessors[i].load(this, database, cursor, columnIndex);
             }
             catch (IllegalArgumentException e)
             {
@@ -389,10 +705,6 @@ public abstract class Model implements IModel
             {
                 Log.e(e.getClass().getName(), e);
             }
-            catch (SecurityException e)
-            {
-                Log.e(e.getClass().getName(), e);
-            }
         }
     }
 
@@ -455,4 +767,18 @@ public abstract class Model implements IModel
         return hash; // To change body of generated methods, choose Tools |
         // Templates.
     }
+
+    // ////////////////////////////////////////////////////////////////////////////////////
+    // INNER CLASSES
+    // ////////////////////////////////////////////////////////////////////////////////////
+
+    private interface BatchWriter
+    {
+        /**
+         * Writes the entity at {@code index} and possibly the ones after it up to {@code end}.
+         *
+         * @return number of entities written, at least one.
+         */
+        int write(List<? extends Model> entities, int index, int end);
+    }
 }
@@ -25,11 +25,15 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import android.content.Context;
 
+import com.activeandroid.sebbia.internal.ModelRegistry;
 import com.activeandroid.sebbia.serializer.CalendarSerializer;
 import com.activeandroid.sebbia.serializer.FileSerializer;
 import com.activeandroid.sebbia.serializer.SqlDateSerializer;
@@ -46,8 +50,10 @@ final class ModelInfo
     // PRIVATE METHODS
     //////////////////////////////////////////////////////////////////////////////////////
 
-    private Map<Class<? extends Model>, TableInfo> mTableInfos      = new HashMap<Class<? extends Model>, TableInfo>();
-    private Map<Class<?>, TypeSerializer>          mTypeSerializers = new HashMap<Class<?>, TypeSerializer>()
+    private final boolean                                              mLazy;
+    private final Set<Class<? extends Model>>                          mModelClasses    = new LinkedHashSet<Class<? extends Model>>();
+    private final ConcurrentHashMap<Class<? extends Model>, TableInfo> mTableInfos      = new ConcurrentHashMap<Class<? extends Model>, TableInfo>();
+    private Map<Class<?>, TypeSerializer>                              mTypeSerializers = new HashMap<Class<?>, TypeSerializer>()
     {
         {
             put(Calendar.class, new CalendarSerializer());
@@ -57,13 +63,16 @@ final class ModelInfo
         }
     };
 
+    private ModelRegistry mRegistry;
+
     //////////////////////////////////////////////////////////////////////////////////////
     // CONSTRUCTORS
     //////////////////////////////////////////////////////////////////////////////////////
 
     public ModelInfo(Configuration configuration)
     {
-        if (!loadModelFromMetaData(configuration))
+        mLazy = configuration.isLazyInitialization();
+        if (!loadModelFromMetaData(configuration) && !loadModelFromRegistry(configuration))
         {
             try
             {
@@ -82,14 +91,42 @@ final class ModelInfo
     // PUBLIC METHODS
     //////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * @return all tables, building the ones that have not been used yet in lazy mode.
+     */
     public Collection<TableInfo> getTableInfos()
     {
+        if (mLazy && mTableInfos.size() < mModelClasses.size())
+        {
+            for (Class<? extends Model> type : mModelClasses)
+            {
+                getTableInfo(type);
+            }
+        }
+
         return mTableInfos.values();
     }
 
     public TableInfo getTableInfo(Class<? extends Model> type)
     {
-        return mTableInfos.get(type);
+        TableInfo tableInfo = mTableInfos.get(type);
+        if (tableInfo == null && mLazy && mModelClasses.contains(type))
+        {
+            // Racing threads may both build it, only the first one is kept.
+            TableInfo created = new TableInfo(type);
+            tableInfo = mTableInfos.putIfAbsent(type, created);
+            if (tableInfo == null)
+            {
+                tableInfo = created;
+            }
+        }
+
+        return tableInfo;
+    }
+
+    public boolean isLazy()
+    {
+        return mLazy;
     }
 
     public TypeSerializer getTypeSerializer(Class<?> type)
@@ -97,10 +134,28 @@ final class ModelInfo
         return mTypeSerializers.get(type);
     }
 
+    /**
+     * @return the generated registry the models were loaded from, null if they were found
+     * otherwise.
+     */
+    public ModelRegistry getRegistry()
+    {
+        return mRegistry;
+    }
+
     //////////////////////////////////////////////////////////////////////////////////////
     // PRIVATE METHODS
     //////////////////////////////////////////////////////////////////////////////////////
 
+    private void addModel(Class<? extends Model> type)
+    {
+        mModelClasses.add(type);
+        if (!mLazy)
+        {
+            mTableInfos.put(type, new TableInfo(type));
+        }
+    }
+
     private boolean loadModelFromMetaData(Configuration configuration)
     {
         if (!configuration.isValid())
@@ -113,7 +168,7 @@ final class ModelInfo
         {
             for (Class<? extends Model> model : models)
             {
-                mTableInfos.put(model, new TableInfo(model));
+                addModel(model);
             }
         }
 
@@ -141,6 +196,61 @@ final class ModelInfo
         return true;
     }
 
+    private boolean loadModelFromRegistry(Configuration configuration)
+    {
+        String className = configuration.getModelRegistry();
+        if (className == null)
+        {
+            return false;
+        }
+
+        ModelRegistry registry;
+        try
+        {
+            registry = (ModelRegistry) Class.forName(className, true, configuration.getContext().getClassLoader()).newInstance();
+        }
+        catch (ClassNotFoundException e)
+        {
+            Log.v("No model registry generated, scanning for models.");
+            return false;
+        }
+        catch (InstantiationException e)
+        {
+            Log.e("Couldn't instantiate model registry.", e);
+            return false;
+        }
+        catch (IllegalAccessException e)
+        {
+            Log.e("IllegalAccessException", e);
+            return false;
+        }
+
+        for (Class<? extends Model> model : registry.getModelClasses())
+        {
+            addModel(model);
+        }
+
+        for (Class<? extends TypeSerializer> typeSerializer : registry.getTypeSerializers())
+        {
+            try
+            {
+                TypeSerializer instance = typeSerializer.newInstance();
+                mTypeSerializers.put(instance.getDeserializedType(), instance);
+            }
+            catch (InstantiationException e)
+            {
+                Log.e("Couldn't instantiate TypeSerializer.", e);
+            }
+            catch (IllegalAccessException e)
+            {
+                Log.e("IllegalAccessException", e);
+            }
+        }
+
+        mRegistry = registry;
+        return true;
+    }
+
     private void scanForModel(Context context) throws IOException
     {
         String       packageName = context.getPackageName();
@@ -225,7 +335,7 @@ final class ModelInfo
                 {
                     @SuppressWarnings("unchecked")
                     Class<? extends Model> modelClass = (Class<? extends Model>) discoveredClass;
-                    mTableInfos.put(modelClass, new TableInfo(modelClass));
+                    addModel(modelClass);
                 }
                 else if (ReflectionUtils.isTypeSerializer(discoveredClass))
                 {
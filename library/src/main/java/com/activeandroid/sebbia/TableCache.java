@@ -0,0 +1,542 @@
+package com.activeandroid.sebbia;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.activeandroid.sebbia.annotation.Table.CachePolicy;
+
+import java.lang.ref.SoftReference;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Identity map segment holding the cached entities of a single table.
+ * <p/>
+ * Entities are spread over a fixed number of stripes by id, every stripe is guarded by its
+ * own monitor, so threads hydrating different rows of the same table rarely contend. Stripes
+ * are open addressing tables keyed by the primitive id, probing them does not allocate.
+ * <p/>
+ * Every entity carries a weight, either 1 or its estimated size in bytes, and the segment
+ * keeps the total so the owning {@link EntityCache} can enforce its budget. Segments with a
+ * private {@link CachePolicy} enforce their own capacity instead.
+ * <p/>
+ * Hits, misses, puts, evictions and hydration time are counted per stripe under the
+ * monitor the operation holds anyway, {@link #getStatistics()} sums them up.
+ */
+final class TableCache
+{
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE MEMBERS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private final Class<? extends Model> mType;
+    private final CachePolicy            mPolicy;
+    private final int                    mCapacity;
+
+    private final Stripe[] mStripes;
+    private final int      mMask;
+
+    private final AtomicLong mWeight = new AtomicLong();
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    TableCache(Class<? extends Model> type, CachePolicy policy, int capacity, int stripes)
+    {
+        mType = type;
+        mPolicy = policy;
+        mCapacity = capacity;
+        mStripes = new Stripe[stripes];
+        mMask = stripes - 1;
+
+        boolean soft = policy == CachePolicy.SOFT;
+        for (int i = 0; i < stripes; i++)
+        {
+            mStripes[i] = new Stripe(soft);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    public Class<? extends Model> getType()
+    {
+        return mType;
+    }
+
+    public CachePolicy getPolicy()
+    {
+        return mPolicy;
+    }
+
+    /**
+     * @return true if the segment counts against the budget shared by all tables.
+     */
+    public boolean isShared()
+    {
+        return mPolicy == CachePolicy.DEFAULT;
+    }
+
+    public long weight()
+    {
+        return mWeight.get();
+    }
+
+    public Model get(long id)
+    {
+        Stripe stripe = mStripes[indexOf(id)];
+        synchronized (stripe)
+        {
+            if (mPolicy == CachePolicy.NONE)
+            {
+                stripe.mMisses++;
+                return null;
+            }
+
+            if (stripe.isSoft())
+            {
+                // Lookups drop entries whose referent has been collected.
+                long weight = stripe.weight();
+                Model entity = stripe.get(id);
+                mWeight.addAndGet(stripe.weight() - weight);
+                return entity;
+            }
+            return stripe.get(id);
+        }
+    }
+
+    /**
+     * @param loadNanos time it took to hydrate the entity from a cursor, or -1 if it was not
+     *                  just loaded.
+     * @return the change of the segment weight.
+     */
+    public long put(long id, Model entity, int weight, long loadNanos)
+    {
+        Stripe stripe = mStripes[indexOf(id)];
+        synchronized (stripe)
+        {
+            if (loadNanos >= 0)
+            {
+                stripe.mLoads++;
+                stripe.mLoadNanos += loadNanos;
+            }
+
+            if (mPolicy == CachePolicy.NONE)
+            {
+                return 0;
+            }
+
+            stripe.mPuts++;
+            long before = stripe.weight();
+            stripe.put(id, entity, weight);
+            long delta = stripe.weight() - before;
+            mWeight.addAndGet(delta);
+            return delta;
+        }
+    }
+
+    /**
+     * Evicts entities until a private LRU or SOFT segment is back within its own capacity.
+     */
+    public void trim(long hint)
+    {
+        if (mCapacity <= 0 || (mPolicy != CachePolicy.LRU && mPolicy != CachePolicy.SOFT))
+        {
+            return;
+        }
+
+        while (mWeight.get() > mCapacity && evict(hint) > 0)
+        {
+        }
+    }
+
+    /**
+     * @return weight of the removed entity, 0 if nothing was cached under this id.
+     */
+    public int remove(long id)
+    {
+        Stripe stripe = mStripes[indexOf(id)];
+        synchronized (stripe)
+        {
+            int weight = stripe.remove(id);
+            mWeight.addAndGet(-weight);
+            return weight;
+        }
+    }
+
+    /**
+     * Evicts a least recently used entity of a stripe. The stripe owning the given id is
+     * tried last so an entity that has just been added is not the first one to go.
+     *
+     * @return weight of the evicted entity, 0 if the segment is empty.
+     */
+    public int evict(long hint)
+    {
+        int start = indexOf(hint) + 1;
+        for (int i = 0; i < mStripes.length; i++)
+        {
+            Stripe stripe = mStripes[(start + i) & mMask];
+            synchronized (stripe)
+            {
+                int weight = stripe.evict();
+                if (weight > 0)
+                {
+                    stripe.mEvictions++;
+                    mWeight.addAndGet(-weight);
+                    return weight;
+                }
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * @return weight of the entities that were removed.
+     */
+    public long clear()
+    {
+        long weight = 0;
+        for (Stripe stripe : mStripes)
+        {
+            synchronized (stripe)
+            {
+                weight += stripe.weight();
+                stripe.clear();
+            }
+        }
+        mWeight.addAndGet(-weight);
+
+        return weight;
+    }
+
+    public TableStatistics getStatistics()
+    {
+        TableStatistics statistics = new TableStatistics(mType, mPolicy);
+        for (Stripe stripe : mStripes)
+        {
+            synchronized (stripe)
+            {
+                statistics.mHits += stripe.mHits;
+                statistics.mMisses += stripe.mMisses;
+                statistics.mPuts += stripe.mPuts;
+                statistics.mEvictions += stripe.mEvictions;
+                statistics.mLoads += stripe.mLoads;
+                statistics.mLoadNanos += stripe.mLoadNanos;
+                statistics.mSize += stripe.size();
+                statistics.mWeight += stripe.weight();
+            }
+        }
+
+        return statistics;
+    }
+
+    public void resetStatistics()
+    {
+        for (Stripe stripe : mStripes)
+        {
+            synchronized (stripe)
+            {
+                stripe.resetStatistics();
+            }
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private int indexOf(long id)
+    {
+        return hash(id) >>> 28 & mMask;
+    }
+
+    private static int hash(long id)
+    {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // INNER CLASSES
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Linear probing map from id to entity. Removal shifts the following entries back
+     * instead of leaving tombstones, eviction is a clock sweep over the reference bits that
+     * lookups set, which approximates LRU without reordering anything on a hit.
+     * <p/>
+     * Soft stripes store a {@link SoftReference} per entity instead of the entity itself.
+     */
+    private static final class Stripe
+    {
+        private static final int INITIAL_CAPACITY = 8;
+
+        private final boolean mSoft;
+
+        private long[]    mKeys;
+        private Object[]  mValues;
+        private int[]     mWeights;
+        private boolean[] mReferenced;
+        private int       mMask;
+        private int       mSize;
+        private long      mWeight;
+        private int       mHand;
+
+        // Statistics, guarded by the stripe like everything else.
+        long mHits;
+        long mMisses;
+        long mPuts;
+        long mEvictions;
+        long mLoads;
+        long mLoadNanos;
+
+        Stripe(boolean soft)
+        {
+            mSoft = soft;
+            allocate(INITIAL_CAPACITY);
+        }
+
+        boolean isSoft()
+        {
+            return mSoft;
+        }
+
+        long weight()
+        {
+            return mWeight;
+        }
+
+        int size()
+        {
+            return mSize;
+        }
+
+        Model get(long id)
+        {
+            int slot = find(id);
+            if (slot < 0)
+            {
+                mMisses++;
+                return null;
+            }
+
+            Model entity = entityAt(slot);
+            if (entity == null)
+            {
+                // Collected soft entry, the collector evicted it for us.
+                removeAt(slot);
+                mEvictions++;
+                mMisses++;
+                return null;
+            }
+
+            mReferenced[slot] = true;
+            mHits++;
+            return entity;
+        }
+
+        /**
+         * @return weight of the replaced entity, 0 if the id was not cached.
+         */
+        int put(long id, Model entity, int weight)
+        {
+            if ((mSize + 1) * 4 > mValues.length * 3)
+            {
+                resize(mValues.length * 2);
+            }
+
+            int slot = hash(id) & mMask;
+            while (mValues[slot] != null)
+            {
+                if (mKeys[slot] == id)
+                {
+                    int previous = mWeights[slot];
+                    mValues[slot] = wrap(entity);
+                    mWeights[slot] = weight;
+                    mReferenced[slot] = true;
+                    mWeight += weight - previous;
+                    return previous;
+                }
+                slot = (slot + 1) & mMask;
+            }
+
+            mKeys[slot] = id;
+            mValues[slot] = wrap(entity);
+            mWeights[slot] = weight;
+            mReferenced[slot] = true;
+            mSize++;
+            mWeight += weight;
+            return 0;
+        }
+
+        int remove(long id)
+        {
+            int slot = find(id);
+            if (slot < 0)
+            {
+                return 0;
+            }
+
+            return removeAt(slot);
+        }
+
+        int evict()
+        {
+            if (mSize == 0)
+            {
+                return 0;
+            }
+
+            while (true)
+            {
+                int slot = mHand;
+                mHand = (mHand + 1) & mMask;
+
+                if (mValues[slot] == null)
+                {
+                    continue;
+                }
+
+                if (mReferenced[slot] && entityAt(slot) != null)
+                {
+                    mReferenced[slot] = false;
+                    continue;
+                }
+
+                return removeAt(slot);
+            }
+        }
+
+        void clear()
+        {
+            allocate(INITIAL_CAPACITY);
+        }
+
+        void resetStatistics()
+        {
+            mHits = 0;
+            mMisses = 0;
+            mPuts = 0;
+            mEvictions = 0;
+            mLoads = 0;
+            mLoadNanos = 0;
+        }
+
+        private Object wrap(Model entity)
+        {
+            return mSoft ? new SoftReference<Model>(entity) : entity;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Model entityAt(int slot)
+        {
+            Object value = mValues[slot];
+            if (mSoft)
+            {
+                return ((SoftReference<Model>) value).get();
+            }
+            return (Model) value;
+        }
+
+        private int find(long id)
+        {
+            int slot = hash(id) & mMask;
+            while (mValues[slot] != null)
+            {
+                if (mKeys[slot] == id)
+                {
+                    return slot;
+                }
+                slot = (slot + 1) & mMask;
+            }
+
+            return -1;
+        }
+
+        private int removeAt(int slot)
+        {
+            int weight = mWeights[slot];
+            mValues[slot] = null;
+            mSize--;
+            mWeight -= weight;
+
+            int next = slot;
+            while (true)
+            {
+                next = (next + 1) & mMask;
+                if (mValues[next] == null)
+                {
+                    return weight;
+                }
+
+                // Move the entry back unless its home slot lies cyclically in (slot, next].
+                int home = hash(mKeys[next]) & mMask;
+                boolean stays = slot <= next ? (slot < home && home <= next) : (slot < home || home <= next);
+                if (!stays)
+                {
+                    mKeys[slot] = mKeys[next];
+                    mValues[slot] = mValues[next];
+                    mWeights[slot] = mWeights[next];
+                    mReferenced[slot] = mReferenced[next];
+                    mValues[next] = null;
+                    slot = next;
+                }
+            }
+        }
+
+        private void resize(int capacity)
+        {
+            long[] keys = mKeys;
+            Object[] values = mValues;
+            int[] weights = mWeights;
+            boolean[] referenced = mReferenced;
+
+            allocate(capacity);
+            for (int i = 0; i < values.length; i++)
+            {
+                // Growing is also when collected soft entries are purged.
+                if (values[i] != null && (!mSoft || ((SoftReference<?>) values[i]).get() != null))
+                {
+                    int slot = hash(keys[i]) & mMask;
+                    while (mValues[slot] != null)
+                    {
+                        slot = (slot + 1) & mMask;
+                    }
+                    mKeys[slot] = keys[i];
+                    mValues[slot] = values[i];
+                    mWeights[slot] = weights[i];
+                    mReferenced[slot] = referenced[i];
+                    mSize++;
+                    mWeight += weights[i];
+                }
+            }
+        }
+
+        private void allocate(int capacity)
+        {
+            mKeys = new long[capacity];
+            mValues = new Object[capacity];
+            mWeights = new int[capacity];
+            mReferenced = new boolean[capacity];
+            mMask = capacity - 1;
+            mSize = 0;
+            mWeight = 0;
+            mHand = 0;
+        }
+    }
+}
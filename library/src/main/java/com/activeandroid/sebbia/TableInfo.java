@@ -16,6 +16,7 @@ package com.activeandroid.sebbia;
  * limitations under the License.
  */
 
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteStatement;
 import android.text.TextUtils;
@@ -23,11 +24,14 @@ import android.util.SparseArray;
 
 import com.activeandroid.sebbia.annotation.Column;
 import com.activeandroid.sebbia.annotation.Table;
+import com.activeandroid.sebbia.internal.ColumnPlan;
 import com.activeandroid.sebbia.util.Log;
 import com.activeandroid.sebbia.util.ReflectionUtils;
 import com.activeandroid.sebbia.util.SQLiteUtils;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -47,18 +51,37 @@ public final class TableInfo
     private final String                 mDatabaseName;
     private String mIdName = Table.DEFAULT_ID_NAME;
 
+    private Table.CachePolicy mCachePolicy = Table.CachePolicy.DEFAULT;
+    private int               mCacheSize;
+    private boolean           mTrackChanges;
+
     private Map<Field, String> mColumnNames = new LinkedHashMap<Field, String>();
 
     private SparseArray<SQLiteStatement> mInsertStatement;
     private SparseArray<SQLiteStatement> mInsertOrReplaceStatement;
     private SparseArray<SQLiteStatement> mUpdateStatement;
+    private SparseArray<SQLiteStatement> mDeleteStatement;
+    private SparseArray<SQLiteStatement> mBulkInsertStatement;
+    private SparseArray<SQLiteStatement> mUpsertStatement;
+    private SparseArray<SQLiteStatement> mUniqueKeyQuery;
 
     private Map<String, Integer> mColumnIndexes;
+    private Map<String, Integer> mUpdateColumnIndexes;
+
+    private          int                        mBulkInsertRows;
+    private volatile List<Map<String, Integer>> mBulkColumnIndexes;
+
+    private String[] mUniqueKey;
+
+    private Map<String, Class<? extends Model>> mReferences = new LinkedHashMap<String, Class<? extends Model>>();
+
+    private volatile ColumnAccessor[] mColumnAccessors;
 
     //////////////////////////////////////////////////////////////////////////////////////
     // CONSTRUCTORS
     //////////////////////////////////////////////////////////////////////////////////////
 
+    @SuppressWarnings("unchecked")
     public TableInfo(Class<? extends Model> type)
     {
         mType = type;
@@ -66,6 +89,10 @@ public final class TableInfo
         mInsertStatement = new SparseArray<>();
         mInsertOrReplaceStatement = new SparseArray<>();
         mUpdateStatement = new SparseArray<>();
+        mDeleteStatement = new SparseArray<>();
+        mBulkInsertStatement = new SparseArray<>();
+        mUpsertStatement = new SparseArray<>();
+        mUniqueKeyQuery = new SparseArray<>();
 
         final Table tableAnnotation = type.getAnnotation(Table.class);
 
@@ -74,6 +101,9 @@ public final class TableInfo
             mTableName = tableAnnotation.name();
             mDatabaseName = tableAnnotation.db();
             mIdName = tableAnnotation.id();
+            mCachePolicy = tableAnnotation.cachePolicy();
+            mCacheSize = tableAnnotation.cacheSize();
+            mTrackChanges = tableAnnotation.trackChanges();
         }
         else
         {
@@ -88,6 +118,8 @@ public final class TableInfo
         List<Field> fields = new LinkedList<Field>(ReflectionUtils.getDeclaredColumnFields(type));
         Collections.reverse(fields);
 
+        boolean                   unique       = false;
+        Map<String, List<String>> uniqueGroups = new LinkedHashMap<String, List<String>>();
         for (Field field : fields)
         {
             if (field.isAnnotationPresent(Column.class))
@@ -100,15 +132,66 @@ public final class TableInfo
                 }
 
                 mColumnNames.put(field, columnName);
+                if (ReflectionUtils.isModel(field.getType()))
+                {
+                    mReferences.put(columnName, (Class<? extends Model>) field.getType());
+                }
+                unique |= columnAnnotation.unique() || columnAnnotation.uniqueGroups().length > 0;
+
+                if (columnAnnotation.unique() && mUniqueKey == null)
+                {
+                    mUniqueKey = new String[]{columnName};
+                }
+                String[] groups = columnAnnotation.uniqueGroups();
+                if (groups.length == columnAnnotation.onUniqueConflicts().length)
+                {
+                    for (String group : groups)
+                    {
+                        if (TextUtils.isEmpty(group))
+                        {
+                            continue;
+                        }
+                        List<String> columns = uniqueGroups.get(group);
+                        if (columns == null)
+                        {
+                            columns = new ArrayList<String>();
+                            uniqueGroups.put(group, columns);
+                        }
+                        columns.add(columnName);
+                    }
+                }
             }
         }
 
+        // A unique column keys upserts before a unique group.
+        if (mUniqueKey == null && !uniqueGroups.isEmpty())
+        {
+            List<String> columns = uniqueGroups.values().iterator().next();
+            mUniqueKey = columns.toArray(new String[columns.size()]);
+        }
+
+        // Rows inserted together get consecutive ids unless a unique conflict replaces a row.
+        mBulkInsertRows = SQLiteUtils.MULTI_ROW_INSERT_SUPPORTED && !unique
+                ? Math.max(1, Math.min(SQLiteUtils.MAX_INSERT_ROWS, SQLiteUtils.MAX_VARIABLE_NUMBER / mColumnNames.size())) : 1;
+
         mColumnIndexes = new HashMap<String, Integer>(mColumnNames.size());
         int index = 1;
         for (String column : mColumnNames.values())
         {
             mColumnIndexes.put(column, index++);
         }
+
+        // Updates set every other column and match the id with the last placeholder.
+        mUpdateColumnIndexes = new HashMap<String, Integer>(mColumnNames.size());
+        index = 1;
+        for (String column : mColumnNames.values())
+        {
+            if (!column.equals(mIdName))
+            {
+                mUpdateColumnIndexes.put(column, index++);
+            }
+        }
+        mUpdateColumnIndexes.put(mIdName, index);
     }
 
     //////////////////////////////////////////////////////////////////////////////////////
@@ -135,6 +218,21 @@ public final class TableInfo
         return mIdName;
     }
 
+    public Table.CachePolicy getCachePolicy()
+    {
+        return mCachePolicy;
+    }
+
+    public int getCacheSize()
+    {
+        return mCacheSize;
+    }
+
+    public boolean isTrackChanges()
+    {
+        return mTrackChanges;
+    }
+
     public Collection<Field> getFields()
     {
         return mColumnNames.keySet();
@@ -150,6 +248,14 @@ public final class TableInfo
         return mColumnNames.get(field);
     }
 
+    /**
+     * @return columns holding the id of another model, with the type of that model.
+     */
+    public Map<String, Class<? extends Model>> getReferences()
+    {
+        return mReferences;
+    }
+
     public SQLiteStatement getInsertStatement(String database)
     {
         int key = database.hashCode();
@@ -180,6 +286,24 @@ public final class TableInfo
         return statement;
     }
 
+    /**
+     * Delete of the row with the id bound to the only placeholder.
+     */
+    public SQLiteStatement getDeleteStatement(String database)
+    {
+        int key = database.hashCode();
+
+        SQLiteStatement statement = mDeleteStatement.get(key);
+        if (statement == null)
+        {
+            SQLiteDatabase db = Cache.openDatabase(database);
+            statement = db.compileStatement(SQLiteUtils.createDeleteStatement(this));
+            mDeleteStatement.put(key, statement);
+        }
+
+        return statement;
+    }
+
     public SQLiteStatement getInsertOrReplaceStatement(String database)
     {
         int key = database.hashCode();
@@ -195,6 +319,79 @@ public final class TableInfo
         return statement;
     }
 
+    /**
+     * Insert of {@link #getBulkInsertRows()} rows, new rows of this table get their ids from
+     * the id of the last row.
+     */
+    public SQLiteStatement getBulkInsertStatement(String database)
+    {
+        int key = database.hashCode();
+
+        SQLiteStatement statement = mBulkInsertStatement.get(key);
+        if (statement == null)
+        {
+            SQLiteDatabase db = Cache.openDatabase(database);
+            statement = db.compileStatement(SQLiteUtils.createInsertStatement("INSERT OR REPLACE INTO ", this, mBulkInsertRows));
+            mBulkInsertStatement.put(key, statement);
+        }
+
+        return statement;
+    }
+
+    /**
+     * @return number of rows written by one statement from {@link #getBulkInsertStatement(String)},
+     * 1 if rows of this table have to be inserted one by one.
+     */
+    public int getBulkInsertRows()
+    {
+        return mBulkInsertRows;
+    }
+
+    /**
+     * @return columns of the first unique column or unique group, null if the table has none.
+     */
+    public String[] getUniqueKey()
+    {
+        return mUniqueKey;
+    }
+
+    /**
+     * Insert that updates the row with the same {@link #getUniqueKey()} instead of failing, needs
+     * SQLite 3.24.
+     */
+    public SQLiteStatement getUpsertStatement(String database)
+    {
+        int key = database.hashCode();
+
+        SQLiteStatement statement = mUpsertStatement.get(key);
+        if (statement == null)
+        {
+            SQLiteDatabase db = Cache.openDatabase(database);
+            statement = db.compileStatement(SQLiteUtils.createUpsertStatement(this));
+            mUpsertStatement.put(key, statement);
+        }
+
+        return statement;
+    }
+
+    /**
+     * Query of the id of the row with the {@link #getUniqueKey()} bound in order.
+     */
+    public SQLiteStatement getUniqueKeyQuery(String database)
+    {
+        int key = database.hashCode();
+
+        SQLiteStatement statement = mUniqueKeyQuery.get(key);
+        if (statement == null)
+        {
+            SQLiteDatabase db = Cache.openDatabase(database);
+            statement = db.compileStatement(SQLiteUtils.createUniqueKeyQuery(this));
+            mUniqueKeyQuery.put(key, statement);
+        }
+
+        return statement;
+    }
+
     private Field getIdField(Class<?> type)
     {
         if (type.equals(Model.class))
@@ -221,4 +418,85 @@ public final class TableInfo
         return mColumnIndexes;
     }
 
+    /**
+     * Placeholder positions of the statement from {@link #getUpdateStatement(String)}.
+     */
+    public Map<String, Integer> getUpdateColumnIndexes()
+    {
+        return mUpdateColumnIndexes;
+    }
+
+    /**
+     * Placeholder positions of a row of a multi-row insert, {@link #getColumnIndexes()} for the
+     * first row.
+     */
+    public Map<String, Integer> getColumnIndexes(int row)
+    {
+        List<Map<String, Integer>> rows = mBulkColumnIndexes;
+        if (rows == null)
+        {
+            int columns = mColumnNames.size();
+            rows = new ArrayList<Map<String, Integer>>(mBulkInsertRows);
+            rows.add(mColumnIndexes);
+            for (int i = 1; i < mBulkInsertRows; i++)
+            {
+                Map<String, Integer> indexes = new HashMap<String, Integer>(columns);
+                for (Map.Entry<String, Integer> column : mColumnIndexes.entrySet())
+                {
+                    indexes.put(column.getKey(), column.getValue() + i * columns);
+                }
+                rows.add(indexes);
+            }
+            mBulkColumnIndexes = rows;
+        }
+
+        return rows.get(row);
+    }
+
+    /**
+     * Resolves the column indexes of the cursor for the reflective accessors.
+     */
+    public ColumnPlan createPlan(Cursor cursor)
+    {
+        return createPlan(cursor, "");
+    }
+
+    /**
+     * Resolves the column indexes of columns selected as {@code prefix + name}.
+     */
+    public ColumnPlan createPlan(Cursor cursor, String prefix)
+    {
+        List<String>     columnsOrdered = Arrays.asList(cursor.getColumnNames());
+        ColumnAccessor[] accessors      = getColumnAccessors();
+        int[]            indexes        = new int[accessors.length];
+        for (int i = 0; i < accessors.length; i++)
+        {
+            indexes[i] = columnsOrdered.indexOf(prefix + accessors[i].getName());
+        }
+
+        return new ColumnPlan(indexes, null, columnsOrdered.indexOf(prefix + mIdName));
+    }
+
+    /**
+     * Accessors of the columns in the order of {@link #getFields()}, built on first use since type
+     * serializers are registered after the table infos.
+     */
+    ColumnAccessor[] getColumnAccessors()
+    {
+        ColumnAccessor[] accessors = mColumnAccessors;
+        if (accessors == null)
+        {
+            accessors = new ColumnAccessor[mColumnNames.size()];
+            int index = 0;
+            for (Map.Entry<Field, String> column : mColumnNames.entrySet())
+            {
+                Field field = column.getKey();
+                accessors[index++] = new ColumnAccessor(field, column.getValue(), Cache.getParserForType(field.getType()));
+            }
+            mColumnAccessors = accessors;
+        }
+
+        return accessors;
+    }
+
 }
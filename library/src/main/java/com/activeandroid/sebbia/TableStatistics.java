@@ -0,0 +1,146 @@
+package com.activeandroid.sebbia;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.activeandroid.sebbia.annotation.Table.CachePolicy;
+
+/**
+ * Entity cache counters of a single table, as of the moment the snapshot was taken.
+ */
+public final class TableStatistics
+{
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE MEMBERS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private final Class<? extends Model> mType;
+    private final CachePolicy            mPolicy;
+
+    long mHits;
+    long mMisses;
+    long mPuts;
+    long mEvictions;
+    long mLoads;
+    long mLoadNanos;
+    long mSize;
+    long mWeight;
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    TableStatistics(Class<? extends Model> type, CachePolicy policy)
+    {
+        mType = type;
+        mPolicy = policy;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    public Class<? extends Model> getType()
+    {
+        return mType;
+    }
+
+    public CachePolicy getPolicy()
+    {
+        return mPolicy;
+    }
+
+    public long getHits()
+    {
+        return mHits;
+    }
+
+    public long getMisses()
+    {
+        return mMisses;
+    }
+
+    /**
+     * @return hits divided by lookups, 0 if there were no lookups.
+     */
+    public double getHitRate()
+    {
+        long lookups = mHits + mMisses;
+        return lookups == 0 ? 0 : (double) mHits / lookups;
+    }
+
+    public long getPuts()
+    {
+        return mPuts;
+    }
+
+    public long getEvictions()
+    {
+        return mEvictions;
+    }
+
+    /**
+     * @return number of entities hydrated from a cursor.
+     */
+    public long getLoads()
+    {
+        return mLoads;
+    }
+
+    /**
+     * @return total time spent hydrating entities from cursors, in nanoseconds.
+     */
+    public long getLoadTimeNanos()
+    {
+        return mLoadNanos;
+    }
+
+    /**
+     * @return number of cached entities.
+     */
+    public long getSize()
+    {
+        return mSize;
+    }
+
+    /**
+     * @return weight of the cached entities, in bytes if the cache is weighed.
+     */
+    public long getWeight()
+    {
+        return mWeight;
+    }
+
+    void add(TableStatistics other)
+    {
+        mHits += other.mHits;
+        mMisses += other.mMisses;
+        mPuts += other.mPuts;
+        mEvictions += other.mEvictions;
+        mLoads += other.mLoads;
+        mLoadNanos += other.mLoadNanos;
+        mSize += other.mSize;
+        mWeight += other.mWeight;
+    }
+
+    @Override
+    public String toString()
+    {
+        return mType.getSimpleName() + "[" + mPolicy + "] hits=" + mHits + " misses=" + mMisses
+                + " puts=" + mPuts + " evictions=" + mEvictions + " loads=" + mLoads
+                + " loadTime=" + mLoadNanos / 1000 + "us size=" + mSize + " weight=" + mWeight;
+    }
+}
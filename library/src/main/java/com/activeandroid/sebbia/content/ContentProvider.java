@@ -102,6 +102,7 @@ public class ContentProvider extends android.content.ContentProvider
         String                       database = getDatabase(uri);
 
         final Long id = Cache.openDatabase(database).insert(Cache.getTableName(type), null, values);
+        Cache.invalidateQueries(type);
 
         if (id != null && id > 0)
         {
@@ -121,6 +122,7 @@ public class ContentProvider extends android.content.ContentProvider
         String                       database = getDatabase(uri);
 
         final int count = Cache.openDatabase(database).update(Cache.getTableName(type), values, selection, selectionArgs);
+        Cache.invalidateQueries(type);
 
         notifyChange(uri);
 
@@ -133,6 +135,7 @@ public class ContentProvider extends android.content.ContentProvider
         final Class<? extends Model> type    = getModelType(uri);
         String                       database = getDatabase(uri);
         final int                    count   = Cache.openDatabase(database).delete(Cache.getTableName(type), selection, selectionArgs);
+        Cache.invalidateQueries(type);
 
         notifyChange(uri);
 
@@ -0,0 +1,19 @@
+package com.activeandroid.sebbia.internal;
+
+/**
+ * Column indexes of a cursor resolved once for a model filler and its super fillers, so rows can
+ * be read without looking up column names again. A missing column is stored as -1.
+ */
+public final class ColumnPlan
+{
+    public final int[]      indexes;
+    public final ColumnPlan superPlan;
+    public final int        idIndex;
+
+    public ColumnPlan(int[] indexes, ColumnPlan superPlan, int idIndex)
+    {
+        this.indexes = indexes;
+        this.superPlan = superPlan;
+        this.idIndex = idIndex;
+    }
+}
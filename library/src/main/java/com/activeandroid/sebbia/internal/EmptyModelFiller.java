@@ -12,11 +12,11 @@ public class EmptyModelFiller extends ModelFiller
 {
 
     @Override
-    public void loadFromCursor(Model model, Cursor cursor)
+    public void loadFromCursor(String database, Model model, Cursor cursor, ColumnPlan plan)
     {
         if (superModelFiller != null)
         {
-            superModelFiller.loadFromCursor(model, cursor);
+            superModelFiller.loadFromCursor(database, model, cursor, plan.superPlan);
         }
     }
 
@@ -0,0 +1,129 @@
+package com.activeandroid.sebbia.internal;
+
+import com.activeandroid.sebbia.Model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Entities already hydrated by the query being processed on this thread. References of its rows
+ * are resolved from here before the entity cache, so prefetched and included entities are found
+ * even when their table is not cached or the cache evicted them. Scopes nest, a query run while
+ * resolving a reference sees the entities of the queries around it.
+ *
+ * <pre>
+ * LoadedEntities scope = LoadedEntities.open(true);
+ * try
+ * {
+ *     scope.putAll(parents);
+ *     children = SQLiteUtils.processCursor(database, Child.class, cursor);
+ * }
+ * finally
+ * {
+ *     scope.close();
+ * }
+ * </pre>
+ */
+public final class LoadedEntities
+{
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE MEMBERS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private static final ThreadLocal<LoadedEntities> sCurrent = new ThreadLocal<LoadedEntities>();
+
+    private final LoadedEntities                                mParent;
+    private final boolean                                       mCached;
+    private final Map<Class<? extends Model>, Map<Long, Model>> mEntities;
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private LoadedEntities(LoadedEntities parent, boolean cached)
+    {
+        mParent = parent;
+        mCached = cached;
+        mEntities = new HashMap<Class<? extends Model>, Map<Long, Model>>();
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Opens a scope on this thread, it must be closed in a finally block.
+     *
+     * @param cached false when the rows bypass the entity cache, references that are not in
+     *               scope are then loaded without reading or filling the cache either.
+     */
+    public static LoadedEntities open(boolean cached)
+    {
+        LoadedEntities scope = new LoadedEntities(sCurrent.get(), cached);
+        sCurrent.set(scope);
+        return scope;
+    }
+
+    /**
+     * @return the entity of the type with the id from the open scopes, null if none has it.
+     */
+    public static Model get(Class<? extends Model> type, long id)
+    {
+        for (LoadedEntities scope = sCurrent.get(); scope != null; scope = scope.mParent)
+        {
+            Map<Long, Model> entities = scope.mEntities.get(type);
+            Model            entity   = entities != null ? entities.get(id) : null;
+            if (entity != null)
+            {
+                return entity;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return false when the innermost open scope bypasses the entity cache.
+     */
+    public static boolean isCached()
+    {
+        LoadedEntities scope = sCurrent.get();
+        return scope == null || scope.mCached;
+    }
+
+    public void put(Model entity)
+    {
+        if (entity == null || entity.getId() == null)
+        {
+            return;
+        }
+
+        Map<Long, Model> entities = mEntities.get(entity.getClass());
+        if (entities == null)
+        {
+            entities = new HashMap<Long, Model>();
+            mEntities.put(entity.getClass(), entities);
+        }
+        entities.put(entity.getId(), entity);
+    }
+
+    public void putAll(List<? extends Model> entities)
+    {
+        for (Model entity : entities)
+        {
+            put(entity);
+        }
+    }
+
+    public void close()
+    {
+        if (mParent == null)
+        {
+            sCurrent.remove();
+        }
+        else
+        {
+            sCurrent.set(mParent);
+        }
+    }
+}
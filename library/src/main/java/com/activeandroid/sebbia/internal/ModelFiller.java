@@ -6,16 +6,114 @@ import android.database.sqlite.SQLiteStatement;
 
 import com.activeandroid.sebbia.Model;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 public abstract class ModelFiller
 {
     public static final String SUFFIX = "$$ActiveAndroidModelFiller";
+
+    /**
+     * Approximate shallow size of a Model instance without any of its columns.
+     */
+    public static final int MODEL_SIZE = 48;
+
+    private static final String[] NO_COLUMNS = new String[0];
+
     public ModelFiller superModelFiller;
 
-    public abstract void loadFromCursor(Model model, Cursor cursor);
+    /**
+     * Reads the columns of the current row using indexes resolved by {@link #createPlan}.
+     */
+    public abstract void loadFromCursor(String database, Model model, Cursor cursor, ColumnPlan plan);
+
+    public void loadFromCursor(String database, Model model, Cursor cursor)
+    {
+        loadFromCursor(database, model, cursor, createPlan(cursor, null));
+    }
+
+    /**
+     * Resolves the type serializers of the columns, called once when the filler is created so rows
+     * are converted without looking them up again.
+     */
+    public void bindSerializers()
+    {
+    }
+
+    /**
+     * Creates an empty model with a plain constructor call, or returns null when the model has to
+     * be created reflectively.
+     */
+    public Model newInstance()
+    {
+        return null;
+    }
+
+    /**
+     * Names of the columns declared by the model itself, in the order {@link #loadFromCursor}
+     * reads them.
+     */
+    public String[] getColumnNames()
+    {
+        return NO_COLUMNS;
+    }
+
+    /**
+     * Resolves the column indexes of the cursor for this filler and its super fillers. The first
+     * column with a matching name wins, which keeps the model columns ahead of joined ones.
+     */
+    public ColumnPlan createPlan(Cursor cursor, String idName)
+    {
+        return createPlan(cursor, idName, "");
+    }
+
+    /**
+     * Resolves the column indexes of columns selected as {@code prefix + name}, used for models
+     * fetched along with another one.
+     */
+    public ColumnPlan createPlan(Cursor cursor, String idName, String prefix)
+    {
+        List<String> columnsOrdered = Arrays.asList(cursor.getColumnNames());
+        return createPlan(columnsOrdered, idName != null ? columnsOrdered.indexOf(prefix + idName) : -1, prefix);
+    }
 
     public abstract void fillContentValues(Model model, ContentValues contentValues);
 
     public abstract void bindStatement(Model model, SQLiteStatement statement, Map<String, Integer> columns);
+
+    /**
+     * Binds an update statement, the columns map the id to the placeholder of the WHERE clause.
+     */
+    public void bindUpdateStatement(Model model, SQLiteStatement statement, Map<String, Integer> columns, String idName)
+    {
+        bindStatement(model, statement, columns);
+        statement.bindLong(columns.get(idName), model.getId());
+    }
+
+    private ColumnPlan createPlan(List<String> columnsOrdered, int idIndex, String prefix)
+    {
+        String[] columnNames = getColumnNames();
+        int[]    indexes     = new int[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++)
+        {
+            indexes[i] = columnsOrdered.indexOf(prefix + columnNames[i]);
+        }
+
+        ColumnPlan superPlan = superModelFiller != null ? superModelFiller.createPlan(columnsOrdered, idIndex, prefix) : null;
+        return new ColumnPlan(indexes, superPlan, idIndex);
+    }
+
+    /**
+     * Estimates the heap used by the model, used to weigh entities when the entity cache is
+     * limited by memory instead of entity count.
+     */
+    public int estimateSize(Model model)
+    {
+        if (superModelFiller != null)
+        {
+            return superModelFiller.estimateSize(model);
+        }
+        return MODEL_SIZE;
+    }
 }
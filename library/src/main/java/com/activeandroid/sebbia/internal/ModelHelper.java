@@ -7,7 +7,12 @@ import android.text.TextUtils;
 
 import com.activeandroid.sebbia.Cache;
 import com.activeandroid.sebbia.Model;
+import com.activeandroid.sebbia.query.ModelIterator;
 import com.activeandroid.sebbia.query.Select;
+import com.activeandroid.sebbia.serializer.BlobSerializer;
+import com.activeandroid.sebbia.serializer.DoubleSerializer;
+import com.activeandroid.sebbia.serializer.LongSerializer;
+import com.activeandroid.sebbia.serializer.StringSerializer;
 import com.activeandroid.sebbia.serializer.TypeSerializer;
 import com.activeandroid.sebbia.util.Log;
 import com.activeandroid.sebbia.util.ReflectionUtils;
@@ -24,7 +29,11 @@ public class ModelHelper
 
     public static Object getSerializable(Cursor cursor, Class<?> fieldType, int columnIndex)
     {
-        TypeSerializer typeSerializer = Cache.getParserForType(fieldType);
+        return getSerializable(cursor, Cache.getParserForType(fieldType), columnIndex);
+    }
+
+    public static Object getSerializable(Cursor cursor, TypeSerializer typeSerializer, int columnIndex)
+    {
         if (typeSerializer == null)
         {
             return null;
@@ -35,7 +44,24 @@ public class ModelHelper
             return null;
         }
 
-        fieldType = typeSerializer.getSerializedType();
+        if (typeSerializer instanceof LongSerializer)
+        {
+            return ((LongSerializer) typeSerializer).deserializeLong(cursor.getLong(columnIndex));
+        }
+        else if (typeSerializer instanceof DoubleSerializer)
+        {
+            return ((DoubleSerializer) typeSerializer).deserializeDouble(cursor.getDouble(columnIndex));
+        }
+        else if (typeSerializer instanceof StringSerializer)
+        {
+            return ((StringSerializer) typeSerializer).deserializeString(cursor.getString(columnIndex));
+        }
+        else if (typeSerializer instanceof BlobSerializer)
+        {
+            return ((BlobSerializer) typeSerializer).deserializeBlob(cursor.getBlob(columnIndex));
+        }
+
+        Class<?> fieldType = typeSerializer.getSerializedType();
         Object value = getValueFromCursor(cursor, fieldType, columnIndex);
         if (value != null)
         {
@@ -52,11 +78,44 @@ public class ModelHelper
             return;
         }
 
-        TypeSerializer typeSerializer = Cache.getParserForType(fieldType);
+        setSerializable(values, Cache.getParserForType(fieldType), value, fieldName);
+    }
+
+    public static void setSerializable(ContentValues values, TypeSerializer typeSerializer, Object value, String fieldName)
+    {
+        if (value == null)
+        {
+            values.putNull(fieldName);
+            return;
+        }
+
         if (typeSerializer == null)
         {
             return;
         }
+
+        if (typeSerializer instanceof LongSerializer)
+        {
+            values.put(fieldName, ((LongSerializer) typeSerializer).serializeLong(value));
+            return;
+        }
+        else if (typeSerializer instanceof DoubleSerializer)
+        {
+            values.put(fieldName, ((DoubleSerializer) typeSerializer).serializeDouble(value));
+            return;
+        }
+        else if (typeSerializer instanceof StringSerializer)
+        {
+            values.put(fieldName, ((StringSerializer) typeSerializer).serializeString(value));
+            return;
+        }
+        else if (typeSerializer instanceof BlobSerializer)
+        {
+            values.put(fieldName, ((BlobSerializer) typeSerializer).serializeBlob(value));
+            return;
+        }
+
+        Class<?> fieldType = null;
         value = typeSerializer.serialize(value);
         if (value != null)
         {
@@ -131,13 +190,52 @@ public class ModelHelper
             return;
         }
 
-        TypeSerializer typeSerializer = Cache.getParserForType(fieldType);
+        setSerializable(statement, columns, Cache.getParserForType(fieldType), value, fieldName);
+    }
+
+    public static void setSerializable(SQLiteStatement statement, Map<String, Integer> columns, TypeSerializer typeSerializer, Object value, String fieldName)
+    {
+        if (value == null)
+        {
+            return;
+        }
+
         if (typeSerializer == null)
         {
             return;
         }
 
         int columnIndex = columns.get(fieldName);
+        if (typeSerializer instanceof LongSerializer)
+        {
+            statement.bindLong(columnIndex, ((LongSerializer) typeSerializer).serializeLong(value));
+            return;
+        }
+        else if (typeSerializer instanceof DoubleSerializer)
+        {
+            statement.bindDouble(columnIndex, ((DoubleSerializer) typeSerializer).serializeDouble(value));
+            return;
+        }
+        else if (typeSerializer instanceof StringSerializer)
+        {
+            String serialized = ((StringSerializer) typeSerializer).serializeString(value);
+            if (serialized != null)
+            {
+                statement.bindString(columnIndex, serialized);
+            }
+            return;
+        }
+        else if (typeSerializer instanceof BlobSerializer)
+        {
+            byte[] serialized = ((BlobSerializer) typeSerializer).serializeBlob(value);
+            if (serialized != null)
+            {
+                statement.bindBlob(columnIndex, serialized);
+            }
+            return;
+        }
+
+        Class<?> fieldType = null;
         value = typeSerializer.serialize(value);
         if (value != null)
         {
@@ -158,27 +256,27 @@ public class ModelHelper
 
         if (fieldType.equals(Byte.class) || fieldType.equals(byte.class))
         {
-            statement.bindLong(columnIndex, (Long) value);
+            statement.bindLong(columnIndex, ((Number) value).longValue());
         }
         else if (fieldType.equals(Short.class) || fieldType.equals(short.class))
         {
-            statement.bindLong(columnIndex, (Long) value);
+            statement.bindLong(columnIndex, ((Number) value).longValue());
         }
         else if (fieldType.equals(Integer.class) || fieldType.equals(int.class))
         {
-            statement.bindLong(columnIndex, (Long) value);
+            statement.bindLong(columnIndex, ((Number) value).longValue());
         }
         else if (fieldType.equals(Long.class) || fieldType.equals(long.class))
         {
-            statement.bindLong(columnIndex, (Long) value);
+            statement.bindLong(columnIndex, ((Number) value).longValue());
         }
         else if (fieldType.equals(Float.class) || fieldType.equals(float.class))
         {
-            statement.bindDouble(columnIndex, (Double) value);
+            statement.bindDouble(columnIndex, ((Number) value).doubleValue());
         }
         else if (fieldType.equals(Double.class) || fieldType.equals(double.class))
         {
-            statement.bindDouble(columnIndex, (Double) value);
+            statement.bindDouble(columnIndex, ((Number) value).doubleValue());
         }
         else if (fieldType.equals(Boolean.class) || fieldType.equals(boolean.class))
         {
@@ -212,7 +310,28 @@ public class ModelHelper
         final long                   entityId   = cursor.getLong(columnIndex);
         final Class<? extends Model> entityType = (Class<? extends Model>) fieldType;
 
-        Model entity = Cache.getEntity(entityType, entityId);
+        Model entity = LoadedEntities.get(entityType, entityId);
+        if (entity != null)
+        {
+            return entity;
+        }
+
+        if (!LoadedEntities.isCached())
+        {
+            ModelIterator<Model> iterator = new Select().from(entityType)
+                    .where(Cache.getTableInfo(entityType).getIdName() + "=?", entityId)
+                    .iterate(database, false);
+            try
+            {
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+            finally
+            {
+                iterator.close();
+            }
+        }
+
+        entity = Cache.getEntity(database, entityType, entityId);
         if (entity == null)
         {
             entity = new Select().from(entityType).where(Cache.getTableInfo(entityType).getIdName() + "=?", entityId).executeSingle(database);
@@ -233,6 +352,21 @@ public class ModelHelper
         return null;
     }
 
+    public static int estimateSize(String value)
+    {
+        return value == null ? 0 : 40 + 2 * value.length();
+    }
+
+    public static int estimateSize(byte[] value)
+    {
+        return value == null ? 0 : 16 + value.length;
+    }
+
+    public static int estimateSize(Byte[] value)
+    {
+        return value == null ? 0 : 16 + 20 * value.length;
+    }
+
     public static Object getValueFromCursor(Cursor cursor, Class<?> fieldType, int columnIndex)
     {
         // TODO: Find a smarter way to do this? This if block is necessary because we
@@ -0,0 +1,38 @@
+package com.activeandroid.sebbia.internal;
+
+import com.activeandroid.sebbia.Model;
+import com.activeandroid.sebbia.serializer.TypeSerializer;
+
+import java.util.List;
+
+/**
+ * Index of the models and type serializers of an application, generated at compile time by
+ * the annotation processor so they don't have to be discovered by scanning the APK.
+ * <p/>
+ * The processor writes {@link #DEFAULT_CLASS_NAME} unless the {@link #OPTION_PACKAGE}
+ * option moves it to another package, for example when several modules run the processor.
+ */
+public abstract class ModelRegistry
+{
+    public static final String SIMPLE_NAME        = "ActiveAndroidModelRegistry";
+    public static final String DEFAULT_PACKAGE    = "com.activeandroid.sebbia.internal";
+    public static final String DEFAULT_CLASS_NAME = DEFAULT_PACKAGE + "." + SIMPLE_NAME;
+
+    /**
+     * Annotation processor option overriding the package of the generated registry.
+     */
+    public static final String OPTION_PACKAGE = "activeandroid.registryPackage";
+
+    public abstract List<Class<? extends Model>> getModelClasses();
+
+    public abstract List<Class<? extends TypeSerializer>> getTypeSerializers();
+
+    /**
+     * @return a new instance of the filler generated for the type, null if none was generated
+     * in the module of the registry.
+     */
+    public ModelFiller createFiller(Class<? extends Model> type)
+    {
+        return null;
+    }
+}
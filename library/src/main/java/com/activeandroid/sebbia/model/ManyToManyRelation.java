@@ -41,7 +41,7 @@ public abstract class ManyToManyRelation<T1 extends Model, T2 extends Model> ext
             ArrayList<ManyToManyRelation<T1, T2>> connections = new ArrayList<ManyToManyRelation<T1, T2>>();
             for (T2 entity2 : entities2)
             {
-                ManyToManyRelation<T1, T2> connection = relation.newInstance();
+                ManyToManyRelation<T1, T2> connection = Cache.newInstance(relation);
                 connection.entity1 = entity1;
                 connection.entity2 = entity2;
                 connections.add(connection);
@@ -75,7 +75,7 @@ public abstract class ManyToManyRelation<T1 extends Model, T2 extends Model> ext
             ArrayList<ManyToManyRelation<T1, T2>> connections = new ArrayList<ManyToManyRelation<T1, T2>>();
             for (T1 entity1 : entities1)
             {
-                ManyToManyRelation<T1, T2> connection = relation.newInstance();
+                ManyToManyRelation<T1, T2> connection = Cache.newInstance(relation);
                 connection.entity1 = entity1;
                 connection.entity2 = entity2;
                 connections.add(connection);
@@ -103,7 +103,7 @@ public abstract class ManyToManyRelation<T1 extends Model, T2 extends Model> ext
         TableInfo              crossTableInfo;
         try
         {
-            ManyToManyRelation<T1, T2> instance = relation.newInstance();
+            ManyToManyRelation<T1, T2> instance = Cache.newInstance(relation);
             entity1Class = instance.getEntity1Class();
             entity2Class = instance.getEntity2Class();
             entity1TableInfo = Cache.getTableInfo(entity1Class);
@@ -153,7 +153,7 @@ public abstract class ManyToManyRelation<T1 extends Model, T2 extends Model> ext
         TableInfo              crossTableInfo;
         try
         {
-            ManyToManyRelation<T1, T2> instance = relation.newInstance();
+            ManyToManyRelation<T1, T2> instance = Cache.newInstance(relation);
             entity1Class = instance.getEntity1Class();
             entity2Class = instance.getEntity2Class();
             entity1TableInfo = Cache.getTableInfo(entity1Class);
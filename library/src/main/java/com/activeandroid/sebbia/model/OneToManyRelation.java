@@ -44,7 +44,7 @@ public abstract class OneToManyRelation<T1 extends Model, T2 extends Model> exte
             List<OneToManyRelation<T1, T2>> connections = new ArrayList<OneToManyRelation<T1, T2>>();
             for (T2 entity2 : entities2)
             {
-                OneToManyRelation<T1, T2> connection = relation.newInstance();
+                OneToManyRelation<T1, T2> connection = Cache.newInstance(relation);
                 connection.entity1 = entity1;
                 connection.entity2Type = entity2.getClass().getCanonicalName();
                 connection.entity2 = entity2;
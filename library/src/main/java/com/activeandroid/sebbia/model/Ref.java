@@ -0,0 +1,125 @@
+package com.activeandroid.sebbia.model;
+
+import com.activeandroid.sebbia.Model;
+
+/**
+ * Reference to another model that is only loaded when it is first dereferenced. Declare a column
+ * as {@code Ref<Customer>} instead of {@code Customer} and loading the row keeps the id only, so
+ * listing rows does not pull in the graph behind them.
+ *
+ * <pre>
+ * &#64;Column(name = "customer")
+ * public Ref&lt;Customer&gt; customer;
+ *
+ * order.customer = Ref.of(customer);
+ * Customer customer = order.customer.get();
+ * </pre>
+ */
+public final class Ref<T extends Model>
+{
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE MEMBERS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private final Class<T> mType;
+    private final String   mDatabase;
+    private final Long     mId;
+
+    private volatile T mEntity;
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private Ref(Class<T> type, String database, Long id, T entity)
+    {
+        mType = type;
+        mDatabase = database;
+        mId = id;
+        mEntity = entity;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return reference to an entity that is already loaded, it is written with the id the entity
+     * has when its owner is saved.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Model> Ref<T> of(T entity)
+    {
+        return new Ref<T>((Class<T>) entity.getClass(), null, null, entity);
+    }
+
+    /**
+     * @return reference to the row with the id, loaded from the database on first {@link #get()}.
+     */
+    public static <T extends Model> Ref<T> of(String database, Class<T> type, long id)
+    {
+        return new Ref<T>(type, database, id, null);
+    }
+
+    public Class<T> getType()
+    {
+        return mType;
+    }
+
+    public Long getId()
+    {
+        T entity = mEntity;
+        return entity != null ? entity.getId() : mId;
+    }
+
+    public boolean isLoaded()
+    {
+        return mEntity != null;
+    }
+
+    /**
+     * Loads the entity through the entity cache the first time it is called.
+     *
+     * @return the referenced entity, null if the row does not exist.
+     */
+    public T get()
+    {
+        T entity = mEntity;
+        if (entity == null)
+        {
+            entity = Model.load(mDatabase, mType, mId);
+            mEntity = entity;
+        }
+        return entity;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (obj == this)
+        {
+            return true;
+        }
+        if (!(obj instanceof Ref))
+        {
+            return false;
+        }
+
+        Ref<?> other = (Ref<?>) obj;
+        Long   id    = getId();
+        return mType.equals(other.mType) && id != null && id.equals(other.getId());
+    }
+
+    @Override
+    public int hashCode()
+    {
+        Long id = getId();
+        return 31 * mType.hashCode() + (id != null ? id.hashCode() : 0);
+    }
+
+    @Override
+    public String toString()
+    {
+        return mType.getSimpleName() + "@" + getId();
+    }
+}
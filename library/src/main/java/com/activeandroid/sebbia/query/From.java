@@ -22,6 +22,7 @@ import android.text.TextUtils;
 import com.activeandroid.sebbia.Cache;
 import com.activeandroid.sebbia.Model;
 import com.activeandroid.sebbia.content.ContentProvider;
+import com.activeandroid.sebbia.internal.LoadedEntities;
 import com.activeandroid.sebbia.query.Join.JoinType;
 import com.activeandroid.sebbia.util.Log;
 import com.activeandroid.sebbia.util.SQLiteUtils;
@@ -36,14 +37,19 @@ public final class From implements Sqlable
     private Class<? extends Model> mType;
     private String                 mAlias;
     private List<Join>             mJoins;
+    private List<Include>          mIncludes;
     private final StringBuilder mWhere = new StringBuilder();
     private String mGroupBy;
     private String mHaving;
     private String mOrderBy;
     private String mLimit;
     private String mOffset;
+    private String mSeek;
 
     private List<Object> mArguments;
+    private Object[]     mSeekArguments;
+
+    private boolean mCached;
 
     public From(Class<? extends Model> table, Sqlable queryBase)
     {
@@ -52,6 +58,7 @@ public final class From implements Sqlable
         mQueryBase = queryBase;
 
         mJoins = new ArrayList<Join>();
+        mIncludes = new ArrayList<Include>();
         mArguments = new ArrayList<Object>();
     }
 
@@ -96,6 +103,17 @@ public final class From implements Sqlable
         return join;
     }
 
+    /**
+     * Fetches the model referenced by the {@code foreignKey} column in the same query. Its columns
+     * are selected through a LEFT JOIN and hydrated before the rows, which take their references
+     * from them without further queries even when the referenced table is not cached.
+     */
+    public From include(Class<? extends Model> table, String foreignKey)
+    {
+        mIncludes.add(new Include(table, foreignKey, "include" + mIncludes.size()));
+        return this;
+    }
+
     public From where(String clause)
     {
         // Chain conditions if a previous condition exists.
@@ -157,6 +175,17 @@ public final class From implements Sqlable
         return this;
     }
 
+    /**
+     * Keeps the ids returned by this query in the {@link QueryCache}, running it again with
+     * the same arguments is served from the entity cache until one of the queried tables is
+     * written to.
+     */
+    public From cache()
+    {
+        mCached = true;
+        return this;
+    }
+
     public From limit(int limit)
     {
         return limit(String.valueOf(limit));
@@ -179,6 +208,32 @@ public final class From implements Sqlable
         return this;
     }
 
+    /**
+     * Sets the condition a {@link Keyset} page starts after, replacing the one of the previous
+     * page. It is anded to the chained conditions, which are grouped so an {@link #or(String)}
+     * among them does not bind to it.
+     *
+     * @param clause the condition, null to start from the first row.
+     */
+    void seek(String clause, Object... args)
+    {
+        mSeek = clause;
+        mSeekArguments = args;
+    }
+
+    Class<? extends Model> getType()
+    {
+        return mType;
+    }
+
+    /**
+     * @return the alias of the queried table or its name, to qualify its columns with.
+     */
+    String getTableReference()
+    {
+        return mAlias != null ? mAlias : Cache.getTableName(mType);
+    }
+
     void addArguments(Object[] args)
     {
         for (Object arg : args)
@@ -212,9 +267,36 @@ public final class From implements Sqlable
         }
     }
 
+    private void addIncludes(final StringBuilder sql)
+    {
+        String table = getTableReference();
+        for (Include include : mIncludes)
+        {
+            sql.append("LEFT JOIN ");
+            sql.append(Cache.getTableName(include.mType));
+            sql.append(" AS ");
+            sql.append(include.mAlias);
+            sql.append(" ON ");
+            sql.append(table).append(".").append(include.mForeignKey);
+            sql.append(" = ");
+            sql.append(include.mAlias).append(".").append(Cache.getTableInfo(include.mType).getIdName());
+            sql.append(" ");
+        }
+    }
+
     private void addWhere(final StringBuilder sql)
     {
-        if (mWhere.length() > 0)
+        if (mSeek != null)
+        {
+            sql.append("WHERE ");
+            if (mWhere.length() > 0)
+            {
+                sql.append("(").append(mWhere).append(") AND ");
+            }
+            sql.append(mSeek);
+            sql.append(" ");
+        }
+        else if (mWhere.length() > 0)
         {
             sql.append("WHERE ");
             sql.append(mWhere);
@@ -291,10 +373,27 @@ public final class From implements Sqlable
     public String toSql()
     {
         final StringBuilder sql = new StringBuilder();
-        sql.append(mQueryBase.toSql());
+        if (!mIncludes.isEmpty() && mQueryBase instanceof Select)
+        {
+            List<String> columns = new ArrayList<String>();
+            for (Include include : mIncludes)
+            {
+                for (String column : Cache.getTableInfo(include.mType).getColumnNames())
+                {
+                    columns.add(include.mAlias + "." + column + " AS \"" + include.getPrefix() + column + "\"");
+                }
+            }
+            String table = mAlias != null ? mAlias : Cache.getTableName(mType);
+            sql.append(((Select) mQueryBase).toSql(table, Cache.getTableInfo(mType).getIdName(), columns));
+        }
+        else
+        {
+            sql.append(mQueryBase.toSql());
+        }
 
         addFrom(sql);
         addJoins(sql);
+        addIncludes(sql);
         addWhere(sql);
         addGroupBy(sql);
         addHaving(sql);
@@ -356,12 +455,17 @@ public final class From implements Sqlable
     {
         if (mQueryBase instanceof Select)
         {
-            return SQLiteUtils.rawQuery(database, mType, toSql(), getArguments());
+            if (mCached)
+            {
+                return executeCached(database);
+            }
+            return load(database, toSql(), getArguments());
 
         }
         else
         {
             SQLiteUtils.execSql(database, toSql(), getArguments());
+            Cache.invalidateQueries(mType);
             Cache.getContext().getContentResolver().notifyChange(ContentProvider.createUri(mType, null), null);
             return null;
 
@@ -373,7 +477,8 @@ public final class From implements Sqlable
         if (mQueryBase instanceof Select)
         {
             limit(1);
-            return (T) SQLiteUtils.rawQuerySingle(database, mType, toSql(), getArguments());
+            List<T> entities = load(database, toSql(), getArguments());
+            return entities.isEmpty() ? null : entities.get(0);
 
         }
         else
@@ -385,6 +490,40 @@ public final class From implements Sqlable
         }
     }
 
+    /**
+     * Same as {@link #iterate(String, boolean)} with the entities going through the entity cache.
+     */
+    public <T extends Model> ModelIterator<T> iterate(String database)
+    {
+        return iterate(database, true);
+    }
+
+    /**
+     * Streams the rows of a select instead of loading them into a list. Referenced models are not
+     * prefetched, use {@link #include(Class, String)} for the ones that are read on every row.
+     *
+     * @param cached false to hydrate fresh entities that are not kept in the entity cache.
+     * @return iterator over the rows that must be closed when it is not read to the end.
+     */
+    public <T extends Model> ModelIterator<T> iterate(String database, boolean cached)
+    {
+        if (!(mQueryBase instanceof Select))
+        {
+            throw new IllegalStateException("Only a select can be iterated");
+        }
+
+        List<Class<? extends Model>> includes = new ArrayList<Class<? extends Model>>(mIncludes.size());
+        List<String>                 prefixes = new ArrayList<String>(mIncludes.size());
+        for (Include include : mIncludes)
+        {
+            includes.add(include.mType);
+            prefixes.add(include.getPrefix());
+        }
+
+        Cursor cursor = Cache.openDatabase(database).rawQuery(toSql(), getArguments());
+        return new ModelIterator<T>(database, mType, cursor, cached, includes, prefixes);
+    }
+
     /**
      * Gets a value indicating whether the query returns any rows.
      *
@@ -406,16 +545,123 @@ public final class From implements Sqlable
         return SQLiteUtils.intQuery(database, toCountSql(), getArguments());
     }
 
+    private <T extends Model> List<T> executeCached(String database)
+    {
+        QueryCache queries   = Cache.getQueryCache();
+        String[]   tables    = getTableNames();
+        String     sql       = toSql();
+        String[]   arguments = getArguments();
+
+        List<T> entities = queries.get(database, mType, tables, sql, arguments);
+        if (entities == null)
+        {
+            long[] stamp = queries.stamp(tables);
+            entities = load(database, sql, arguments);
+            queries.put(database, sql, arguments, stamp, entities);
+        }
+
+        return entities;
+    }
+
+    private <T extends Model> List<T> load(String database, String sql, String[] arguments)
+    {
+        if (mIncludes.isEmpty())
+        {
+            return SQLiteUtils.rawQuery(database, mType, sql, arguments);
+        }
+
+        Cursor cursor = Cache.openDatabase(database).rawQuery(sql, arguments);
+        try
+        {
+            return load(database, cursor);
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Hydrates the included models and then the rows of a cursor opened for this query, the
+     * cursor is left open. The rows take their references from the included models directly,
+     * whether or not the entity cache still holds them.
+     */
+    <T extends Model> List<T> load(String database, Cursor cursor)
+    {
+        if (mIncludes.isEmpty())
+        {
+            return SQLiteUtils.processCursor(database, mType, cursor);
+        }
+
+        LoadedEntities included = LoadedEntities.open(true);
+        try
+        {
+            for (Include include : mIncludes)
+            {
+                included.putAll(SQLiteUtils.processCursor(database, include.mType, cursor, include.getPrefix()));
+            }
+            return SQLiteUtils.processCursor(database, mType, cursor);
+        }
+        finally
+        {
+            included.close();
+        }
+    }
+
+    /**
+     * @return the queried, joined and included tables, a write to any of them invalidates the
+     * cached result.
+     */
+    private String[] getTableNames()
+    {
+        String[] tables = new String[1 + mJoins.size() + mIncludes.size()];
+        tables[0] = Cache.getTableName(mType);
+        for (int i = 0; i < mJoins.size(); i++)
+        {
+            tables[1 + i] = Cache.getTableName(mJoins.get(i).getType());
+        }
+        for (int i = 0; i < mIncludes.size(); i++)
+        {
+            tables[1 + mJoins.size() + i] = Cache.getTableName(mIncludes.get(i).mType);
+        }
+
+        return tables;
+    }
+
     public String[] getArguments()
     {
         final int      size = mArguments.size();
-        final String[] args = new String[size];
+        final int      seek = mSeek != null ? mSeekArguments.length : 0;
+        final String[] args = new String[size + seek];
 
         for (int i = 0; i < size; i++)
         {
             args[i] = mArguments.get(i).toString();
         }
+        for (int i = 0; i < seek; i++)
+        {
+            args[size + i] = mSeekArguments[i].toString();
+        }
 
         return args;
     }
+
+    private static final class Include
+    {
+        private final Class<? extends Model> mType;
+        private final String                 mForeignKey;
+        private final String                 mAlias;
+
+        Include(Class<? extends Model> type, String foreignKey, String alias)
+        {
+            mType = type;
+            mForeignKey = foreignKey;
+            mAlias = alias;
+        }
+
+        String getPrefix()
+        {
+            return mAlias + "_";
+        }
+    }
 }
@@ -67,6 +67,11 @@ public final class Join implements Sqlable
         return mFrom;
     }
 
+    Class<? extends Model> getType()
+    {
+        return mType;
+    }
+
     @Override
     public String toSql()
     {
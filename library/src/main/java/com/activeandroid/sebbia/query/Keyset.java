@@ -0,0 +1,198 @@
+package com.activeandroid.sebbia.query;
+
+import android.database.Cursor;
+
+import com.activeandroid.sebbia.Cache;
+import com.activeandroid.sebbia.Model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pages through a query by the key of the last row seen instead of an offset, so every page costs
+ * the same however deep it is. Rows are ordered by a column and then by id, the token of a page
+ * holds both values of its last row and the next page starts right after them.
+ *
+ * <pre>
+ * Keyset keyset = new Keyset("createdAt", true);
+ * Keyset.Page&lt;Item&gt; page = keyset.page(database, new Select().from(Item.class), token, 20);
+ * adapter.addAll(page.getItems());
+ * token = page.getNextToken();
+ * </pre>
+ *
+ * The ordering column must not be null, and an index on it and the id keeps the pages cheap.
+ */
+public final class Keyset
+{
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE CONSTANTS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private static final char TOKEN_SEPARATOR = ':';
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE MEMBERS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private final String  mColumn;
+    private final boolean mDescending;
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @param column the column to order by, null to page by id only.
+     */
+    public Keyset(String column)
+    {
+        this(column, false);
+    }
+
+    /**
+     * @param column     the column to order by, null to page by id only.
+     * @param descending true to walk from the largest keys down.
+     */
+    public Keyset(String column, boolean descending)
+    {
+        mColumn = column;
+        mDescending = descending;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Runs the query for the page after a token. The query is changed in place, its order and
+     * limit are replaced, its offset is cleared and the condition of the previous page it was
+     * used for is swapped for the one of this page. Its own conditions and joins are kept, so the
+     * same query can be passed for every page.
+     *
+     * @param token the token of the previous page, null for the first page.
+     */
+    public <T extends Model> Page<T> page(String database, From query, String token, int size)
+    {
+        String table  = query.getTableReference();
+        String idName = Cache.getTableInfo(query.getType()).getIdName();
+        String id     = table + "." + idName;
+        String op     = mDescending ? " < " : " > ";
+        String order  = mDescending ? " DESC" : " ASC";
+
+        query.seek(null);
+        if (mColumn == null)
+        {
+            if (token != null)
+            {
+                query.seek(id + op + "?", Long.parseLong(token));
+            }
+            query.orderBy(id + order);
+        }
+        else
+        {
+            String column = table + "." + mColumn;
+            if (token != null)
+            {
+                int    separator = token.indexOf(TOKEN_SEPARATOR);
+                String lastId    = token.substring(0, separator);
+                String lastValue = token.substring(separator + 1);
+                query.seek("(" + column + op + "? OR (" + column + " = ? AND " + id + op + "?))",
+                        lastValue, lastValue, Long.parseLong(lastId));
+            }
+            query.orderBy(column + order + ", " + id + order);
+        }
+        query.limit(size);
+        query.offset(null);
+
+        Cursor cursor = Cache.openDatabase(database).rawQuery(query.toSql(), query.getArguments());
+        try
+        {
+            List<T> items = query.load(database, cursor);
+            String nextToken = null;
+            if (items.size() >= size && cursor.moveToLast())
+            {
+                nextToken = createToken(cursor, idName);
+            }
+            return new Page<T>(items, nextToken);
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Reads the keys of the current row. Columns are looked up by their first occurrence, the
+     * queried table comes before joined tables that may have columns with the same names.
+     */
+    private String createToken(Cursor cursor, String idName)
+    {
+        List<String> columns = Arrays.asList(cursor.getColumnNames());
+        String       id      = String.valueOf(cursor.getLong(columns.indexOf(idName)));
+        if (mColumn == null)
+        {
+            return id;
+        }
+
+        int index = columns.indexOf(mColumn);
+        if (index == -1 || cursor.isNull(index))
+        {
+            throw new IllegalStateException("Keyset column " + mColumn + " must be selected and not null");
+        }
+
+        String value;
+        switch (cursor.getType(index))
+        {
+            case Cursor.FIELD_TYPE_INTEGER:
+                value = String.valueOf(cursor.getLong(index));
+                break;
+            case Cursor.FIELD_TYPE_FLOAT:
+                // The shortest text that parses back to the same double.
+                value = String.valueOf(cursor.getDouble(index));
+                break;
+            default:
+                value = cursor.getString(index);
+                break;
+        }
+        return id + TOKEN_SEPARATOR + value;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // INNER CLASSES
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    public static final class Page<T extends Model>
+    {
+        private final List<T> mItems;
+        private final String  mNextToken;
+
+        private Page(List<T> items, String nextToken)
+        {
+            mItems = items;
+            mNextToken = nextToken;
+        }
+
+        public List<T> getItems()
+        {
+            return mItems;
+        }
+
+        /**
+         * @return the token to pass for the next page, null when this page was not full. A full
+         * last page still returns a token, the page after it is empty.
+         */
+        public String getNextToken()
+        {
+            return mNextToken;
+        }
+
+        public boolean hasNext()
+        {
+            return mNextToken != null;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.activeandroid.sebbia.query;
+
+import android.database.Cursor;
+
+import com.activeandroid.sebbia.Cache;
+import com.activeandroid.sebbia.Model;
+import com.activeandroid.sebbia.internal.ColumnPlan;
+import com.activeandroid.sebbia.internal.LoadedEntities;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks the rows of a query and hydrates one model per step instead of loading the whole result,
+ * so scanning a large table keeps a flat heap. The cursor is closed when the last row is read or
+ * when {@link #close()} is called, close it in a finally block when stopping early.
+ *
+ * <pre>
+ * ModelIterator&lt;Item&gt; items = new Select().from(Item.class).iterate(database, false);
+ * try
+ * {
+ *     for (Item item : items)
+ *     {
+ *         export(item);
+ *     }
+ * }
+ * finally
+ * {
+ *     items.close();
+ * }
+ * </pre>
+ *
+ * The included models of a row are handed to its references directly. Without the entity cache
+ * the references that are not included are loaded without the cache as well, so an uncached
+ * iteration neither reads nor fills it.
+ * <p/>
+ * The iterator is its own {@link Iterable} and can be walked only once.
+ */
+public final class ModelIterator<T extends Model> implements Iterator<T>, Iterable<T>, Closeable
+{
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE MEMBERS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private final String                       mDatabase;
+    private final Class<? extends Model>       mType;
+    private final Cursor                       mCursor;
+    private final boolean                      mCached;
+    private final List<Class<? extends Model>> mIncludes;
+
+    private ColumnPlan   mPlan;
+    private ColumnPlan[] mIncludePlans;
+    private boolean      mHasNext;
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    ModelIterator(String database, Class<? extends Model> type, Cursor cursor, boolean cached,
+                  List<Class<? extends Model>> includes, List<String> includePrefixes)
+    {
+        mDatabase = database;
+        mType = type;
+        mCursor = cursor;
+        mCached = cached;
+        mIncludes = includes;
+
+        mHasNext = cursor.moveToFirst();
+        if (mHasNext)
+        {
+            mPlan = Cache.getColumnPlan(type, cursor);
+            mIncludePlans = new ColumnPlan[includes.size()];
+            for (int i = 0; i < includes.size(); i++)
+            {
+                mIncludePlans[i] = Cache.getColumnPlan(includes.get(i), cursor, includePrefixes.get(i));
+            }
+        }
+        else
+        {
+            close();
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public boolean hasNext()
+    {
+        return mHasNext;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next()
+    {
+        if (!mHasNext)
+        {
+            throw new NoSuchElementException();
+        }
+
+        T              entity;
+        LoadedEntities included = LoadedEntities.open(mCached);
+        try
+        {
+            for (int i = 0; i < mIncludePlans.length; i++)
+            {
+                included.put(load(mIncludes.get(i), mIncludePlans[i]));
+            }
+            entity = (T) load(mType, mPlan);
+        }
+        catch (RuntimeException e)
+        {
+            close();
+            throw e;
+        }
+        finally
+        {
+            included.close();
+        }
+
+        mHasNext = mCursor.moveToNext();
+        if (!mHasNext)
+        {
+            close();
+        }
+        return entity;
+    }
+
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException("Rows of a query cannot be removed while iterating");
+    }
+
+    @Override
+    public Iterator<T> iterator()
+    {
+        return this;
+    }
+
+    @Override
+    public void close()
+    {
+        mHasNext = false;
+        if (!mCursor.isClosed())
+        {
+            mCursor.close();
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private Model load(Class<? extends Model> type, ColumnPlan plan)
+    {
+        int idIndex = plan.idIndex;
+        if (idIndex == -1 || mCursor.isNull(idIndex))
+        {
+            return null;
+        }
+
+        Model entity = mCached ? Cache.getEntity(mDatabase, type, mCursor.getLong(idIndex)) : null;
+        if (entity == null)
+        {
+            try
+            {
+                entity = Cache.newInstance(type);
+            }
+            catch (Exception e)
+            {
+                throw new RuntimeException("Cannot create instance of class " + type.getName(), e);
+            }
+        }
+
+        entity.loadFromCursor(mDatabase, mCursor, plan, mCached);
+        return entity;
+    }
+}
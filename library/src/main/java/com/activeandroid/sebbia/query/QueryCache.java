@@ -0,0 +1,241 @@
+package com.activeandroid.sebbia.query;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.support.v4.util.LruCache;
+
+import com.activeandroid.sebbia.Cache;
+import com.activeandroid.sebbia.Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Result cache for queries marked with {@link From#cache()}.
+ * <p/>
+ * A result is stored as the list of ids it returned, keyed by database, SQL and arguments.
+ * Rows themselves are served by the entity cache, so a repeated query costs a map lookup
+ * plus one identity map hit per row. If one of the rows is no longer cached the query is run
+ * again.
+ * <p/>
+ * Every table has a generation that writers bump through {@link #invalidate(String)}. A
+ * result remembers the generations of the tables it read, taken before the query ran, and
+ * is discarded once any of them moved on.
+ */
+public final class QueryCache
+{
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PUBLIC CONSTANTS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    public static final int DEFAULT_SIZE = 64;
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE MEMBERS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private final LruCache<Key, Result> mResults;
+
+    private final ConcurrentHashMap<String, AtomicLong> mGenerations = new ConcurrentHashMap<String, AtomicLong>();
+
+    // Bumped by writes whose tables are unknown, such as raw SQL.
+    private final AtomicLong mGlobalGeneration = new AtomicLong();
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    public QueryCache(int size)
+    {
+        mResults = new LruCache<Key, Result>(Math.max(1, size));
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Marks every cached result that read the given table as stale.
+     */
+    public void invalidate(String tableName)
+    {
+        generation(tableName).incrementAndGet();
+    }
+
+    /**
+     * Marks every cached result as stale.
+     */
+    public void invalidateAll()
+    {
+        mGlobalGeneration.incrementAndGet();
+        mResults.evictAll();
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PACKAGE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Takes the generations of the given tables, must be called before the query runs.
+     */
+    long[] stamp(String[] tables)
+    {
+        long[] stamp = new long[tables.length + 1];
+        stamp[0] = mGlobalGeneration.get();
+        for (int i = 0; i < tables.length; i++)
+        {
+            stamp[i + 1] = generation(tables[i]).get();
+        }
+
+        return stamp;
+    }
+
+    /**
+     * @return the cached entities, null if the result is missing, stale or one of its rows
+     * has left the entity cache.
+     */
+    @SuppressWarnings("unchecked")
+    <T extends Model> List<T> get(String database, Class<? extends Model> type, String[] tables, String sql, String[] arguments)
+    {
+        Key key = new Key(database, sql, arguments);
+        Result result = mResults.get(key);
+        if (result == null)
+        {
+            return null;
+        }
+
+        if (!Arrays.equals(result.mStamp, stamp(tables)))
+        {
+            mResults.remove(key);
+            return null;
+        }
+
+        List<T> entities = new ArrayList<T>(result.mIds.length);
+        for (long id : result.mIds)
+        {
+            Model entity = Cache.getEntity(database, type, id);
+            if (entity == null)
+            {
+                return null;
+            }
+            entities.add((T) entity);
+        }
+
+        return entities;
+    }
+
+    void put(String database, String sql, String[] arguments, long[] stamp, List<? extends Model> entities)
+    {
+        long[] ids = new long[entities.size()];
+        for (int i = 0; i < ids.length; i++)
+        {
+            Long id = entities.get(i).getId();
+            if (id == null)
+            {
+                return;
+            }
+            ids[i] = id;
+        }
+
+        mResults.put(new Key(database, sql, arguments), new Result(stamp, ids));
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private AtomicLong generation(String tableName)
+    {
+        String name = tableName.toLowerCase(Locale.US);
+        AtomicLong generation = mGenerations.get(name);
+        if (generation == null)
+        {
+            AtomicLong created = new AtomicLong();
+            generation = mGenerations.putIfAbsent(name, created);
+            if (generation == null)
+            {
+                generation = created;
+            }
+        }
+
+        return generation;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // INNER CLASSES
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class Key
+    {
+        private final String   mDatabase;
+        private final String   mSql;
+        private final String[] mArguments;
+        private final int      mHash;
+
+        Key(String database, String sql, String[] arguments)
+        {
+            mDatabase = database;
+            mSql = sql;
+            mArguments = arguments;
+
+            int hash = database != null ? database.hashCode() : 0;
+            hash = 31 * hash + sql.hashCode();
+            mHash = 31 * hash + Arrays.hashCode(arguments);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+            {
+                return true;
+            }
+            if (!(obj instanceof Key))
+            {
+                return false;
+            }
+
+            Key other = (Key) obj;
+            return mHash == other.mHash
+                    && mSql.equals(other.mSql)
+                    && (mDatabase == null ? other.mDatabase == null : mDatabase.equals(other.mDatabase))
+                    && Arrays.equals(mArguments, other.mArguments);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return mHash;
+        }
+    }
+
+    private static final class Result
+    {
+        private final long[] mStamp;
+        private final long[] mIds;
+
+        Result(long[] stamp, long[] ids)
+        {
+            mStamp = stamp;
+            mIds = ids;
+        }
+    }
+}
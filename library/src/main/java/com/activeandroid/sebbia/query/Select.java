@@ -20,6 +20,8 @@ import android.text.TextUtils;
 
 import com.activeandroid.sebbia.Model;
 
+import java.util.List;
+
 public final class Select implements Sqlable
 {
     private String[] mColumns;
@@ -83,27 +85,61 @@ public final class Select implements Sqlable
     {
         StringBuilder sql = new StringBuilder();
 
-        sql.append("SELECT ");
+        addSelect(sql);
 
-        if (mDistinct)
+        if (mColumns != null && mColumns.length > 0)
         {
-            sql.append("DISTINCT ");
+            sql.append("Id, ");
+            sql.append(TextUtils.join(", ", mColumns) + " ");
         }
-        else if (mAll)
+        else
         {
-            sql.append("ALL ");
+            sql.append("* ");
         }
 
+        return sql.toString();
+    }
+
+    /**
+     * Selects the columns of the queried table qualified by its name, followed by the columns of
+     * the tables fetched along with it.
+     */
+    String toSql(String table, String idName, List<String> includedColumns)
+    {
+        StringBuilder sql = new StringBuilder();
+
+        addSelect(sql);
+
         if (mColumns != null && mColumns.length > 0)
         {
-            sql.append("Id, ");
-            sql.append(TextUtils.join(", ", mColumns) + " ");
+            sql.append(table).append(".").append(idName).append(", ");
+            sql.append(TextUtils.join(", ", mColumns));
         }
         else
         {
-            sql.append("* ");
+            sql.append(table).append(".*");
+        }
+
+        for (String column : includedColumns)
+        {
+            sql.append(", ").append(column);
         }
+        sql.append(" ");
 
         return sql.toString();
     }
+
+    private void addSelect(StringBuilder sql)
+    {
+        sql.append("SELECT ");
+
+        if (mDistinct)
+        {
+            sql.append("DISTINCT ");
+        }
+        else if (mAll)
+        {
+            sql.append("ALL ");
+        }
+    }
 }
\ No newline at end of file
@@ -16,6 +16,7 @@ package com.activeandroid.sebbia.query;
  * limitations under the License.
  */
 
+import com.activeandroid.sebbia.Cache;
 import com.activeandroid.sebbia.util.SQLiteUtils;
 
 import java.util.ArrayList;
@@ -91,6 +92,7 @@ public final class Set implements Sqlable
     public void execute(String database)
     {
         SQLiteUtils.execSql(database, toSql(), getArguments());
+        Cache.invalidateQueries(mUpdate.getType());
     }
 
     public String[] getArguments()
@@ -2,7 +2,7 @@ package com.activeandroid.sebbia.serializer;
 
 import java.math.BigDecimal;
 
-public final class BigDecimalSerializer extends TypeSerializer
+public final class BigDecimalSerializer extends TypeSerializer implements StringSerializer
 {
     public Class<?> getDeserializedType()
     {
@@ -33,4 +33,14 @@ public final class BigDecimalSerializer extends TypeSerializer
 
         return new BigDecimal((String) data);
     }
-}
\ No newline at end of file
+
+    public String serializeString(Object data)
+    {
+        return ((BigDecimal) data).toString();
+    }
+
+    public BigDecimal deserializeString(String data)
+    {
+        return new BigDecimal(data);
+    }
+}
@@ -0,0 +1,13 @@
+package com.activeandroid.sebbia.serializer;
+
+/**
+ * Optional contract for a {@link TypeSerializer} stored as a BLOB. Columns are bound and read
+ * directly as byte arrays, without looking up the serialized type. Null values and null columns
+ * are handled by the caller.
+ */
+public interface BlobSerializer
+{
+    byte[] serializeBlob(Object data);
+
+    Object deserializeBlob(byte[] data);
+}
@@ -18,7 +18,7 @@ package com.activeandroid.sebbia.serializer;
 
 import java.util.Calendar;
 
-public final class CalendarSerializer extends TypeSerializer
+public final class CalendarSerializer extends TypeSerializer implements LongSerializer
 {
     public Class<?> getDeserializedType()
     {
@@ -36,10 +36,20 @@ public final class CalendarSerializer extends TypeSerializer
     }
 
     public Calendar deserialize(Object data)
+    {
+        return deserializeLong((Long) data);
+    }
+
+    public long serializeLong(Object data)
+    {
+        return ((Calendar) data).getTimeInMillis();
+    }
+
+    public Calendar deserializeLong(long data)
     {
         Calendar calendar = Calendar.getInstance();
-        calendar.setTimeInMillis((Long) data);
+        calendar.setTimeInMillis(data);
 
         return calendar;
     }
-}
\ No newline at end of file
+}
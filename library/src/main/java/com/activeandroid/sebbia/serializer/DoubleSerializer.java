@@ -0,0 +1,13 @@
+package com.activeandroid.sebbia.serializer;
+
+/**
+ * Optional contract for a {@link TypeSerializer} stored as a REAL. Columns are bound and read as a
+ * primitive double, without boxing the value. Null values and null columns are handled by the
+ * caller.
+ */
+public interface DoubleSerializer
+{
+    double serializeDouble(Object data);
+
+    Object deserializeDouble(double data);
+}
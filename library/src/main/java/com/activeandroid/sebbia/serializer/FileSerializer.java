@@ -19,7 +19,7 @@ import java.io.File;
  */
 
 
-public final class FileSerializer extends TypeSerializer
+public final class FileSerializer extends TypeSerializer implements StringSerializer
 {
     public Class<?> getDeserializedType()
     {
@@ -50,4 +50,14 @@ public final class FileSerializer extends TypeSerializer
 
         return new File((String) data);
     }
+
+    public String serializeString(Object data)
+    {
+        return ((File) data).toString();
+    }
+
+    public File deserializeString(String data)
+    {
+        return new File(data);
+    }
 }
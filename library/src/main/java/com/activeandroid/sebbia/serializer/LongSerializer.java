@@ -0,0 +1,13 @@
+package com.activeandroid.sebbia.serializer;
+
+/**
+ * Optional contract for a {@link TypeSerializer} stored as an INTEGER. Columns are bound and read
+ * as a primitive long, without boxing the value. Null values and null columns are handled by the
+ * caller.
+ */
+public interface LongSerializer
+{
+    long serializeLong(Object data);
+
+    Object deserializeLong(long data);
+}
@@ -18,7 +18,7 @@ package com.activeandroid.sebbia.serializer;
 
 import java.sql.Date;
 
-public final class SqlDateSerializer extends TypeSerializer
+public final class SqlDateSerializer extends TypeSerializer implements LongSerializer
 {
     public Class<?> getDeserializedType()
     {
@@ -49,4 +49,14 @@ public final class SqlDateSerializer extends TypeSerializer
 
         return new Date((Long) data);
     }
-}
\ No newline at end of file
+
+    public long serializeLong(Object data)
+    {
+        return ((Date) data).getTime();
+    }
+
+    public Date deserializeLong(long data)
+    {
+        return new Date(data);
+    }
+}
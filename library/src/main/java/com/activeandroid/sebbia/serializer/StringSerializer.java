@@ -0,0 +1,13 @@
+package com.activeandroid.sebbia.serializer;
+
+/**
+ * Optional contract for a {@link TypeSerializer} stored as TEXT. Columns are bound and read
+ * directly as strings, without looking up the serialized type. Null values and null columns are
+ * handled by the caller.
+ */
+public interface StringSerializer
+{
+    String serializeString(Object data);
+
+    Object deserializeString(String data);
+}
@@ -2,7 +2,7 @@ package com.activeandroid.sebbia.serializer;
 
 import java.util.UUID;
 
-public final class UUIDSerializer extends TypeSerializer
+public final class UUIDSerializer extends TypeSerializer implements StringSerializer
 {
     public Class<?> getDeserializedType()
     {
@@ -33,4 +33,14 @@ public final class UUIDSerializer extends TypeSerializer
 
         return UUID.fromString((String) data);
     }
-}
\ No newline at end of file
+
+    public String serializeString(Object data)
+    {
+        return ((UUID) data).toString();
+    }
+
+    public UUID deserializeString(String data)
+    {
+        return UUID.fromString(data);
+    }
+}
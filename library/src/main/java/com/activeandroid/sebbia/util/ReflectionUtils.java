@@ -17,6 +17,8 @@ package com.activeandroid.sebbia.util;
  */
 
 import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
@@ -29,6 +31,7 @@ import android.content.pm.PackageManager;
 
 import com.activeandroid.sebbia.Model;
 import com.activeandroid.sebbia.annotation.Column;
+import com.activeandroid.sebbia.model.Ref;
 import com.activeandroid.sebbia.serializer.TypeSerializer;
 
 public final class ReflectionUtils
@@ -42,6 +45,29 @@ public final class ReflectionUtils
         return type == Model.class || isSubclassOf(type, Model.class);
     }
 
+    public static boolean isRef(Class<?> type)
+    {
+        return type == Ref.class;
+    }
+
+    /**
+     * @return model a {@code Ref<T>} field refers to.
+     */
+    @SuppressWarnings("unchecked")
+    public static Class<? extends Model> getRefType(Field field)
+    {
+        Type type = field.getGenericType();
+        if (type instanceof ParameterizedType)
+        {
+            Type argument = ((ParameterizedType) type).getActualTypeArguments()[0];
+            if (argument instanceof Class && isModel((Class<?>) argument))
+            {
+                return (Class<? extends Model>) argument;
+            }
+        }
+        throw new IllegalArgumentException("Reference " + field.getName() + " must name its model, as in Ref<Customer>");
+    }
+
     public static boolean isTypeSerializer(Class<?> type)
     {
         return isSubclassOf(type, TypeSerializer.class);
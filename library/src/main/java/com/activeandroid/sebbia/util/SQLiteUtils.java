@@ -17,6 +17,8 @@ package com.activeandroid.sebbia.util;
  */
 
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.os.Build;
 import android.text.TextUtils;
 
@@ -25,15 +27,19 @@ import com.activeandroid.sebbia.Model;
 import com.activeandroid.sebbia.TableInfo;
 import com.activeandroid.sebbia.annotation.Column;
 import com.activeandroid.sebbia.annotation.Column.ConflictAction;
+import com.activeandroid.sebbia.internal.ColumnPlan;
+import com.activeandroid.sebbia.internal.LoadedEntities;
+import com.activeandroid.sebbia.query.Select;
 import com.activeandroid.sebbia.serializer.TypeSerializer;
 
-import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -55,6 +61,22 @@ public final class SQLiteUtils
 
     public static final boolean FOREIGN_KEYS_SUPPORTED = Build.VERSION.SDK_INT >= Build.VERSION_CODES.FROYO;
 
+    /**
+     * Inserts of several rows in one VALUES clause need SQLite 3.7.11.
+     */
+    public static final boolean MULTI_ROW_INSERT_SUPPORTED = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+
+    /**
+     * Default limit of host parameters in a statement, SQLITE_MAX_VARIABLE_NUMBER.
+     */
+    public static final int MAX_VARIABLE_NUMBER = 999;
+
+    /**
+     * Before SQLite 3.8.8, which came with Android 6.0, the rows of a VALUES clause are compiled
+     * as a compound select and limited to SQLITE_MAX_COMPOUND_SELECT.
+     */
+    public static final int MAX_INSERT_ROWS = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? Integer.MAX_VALUE : 500;
+
     //////////////////////////////////////////////////////////////////////////////////////
     // PRIVATE CONTSANTS
     //////////////////////////////////////////////////////////////////////////////////////
@@ -93,6 +115,8 @@ public final class SQLiteUtils
     private static HashMap<String, List<String>>   sUniqueGroupMap;
     private static HashMap<String, ConflictAction> sOnUniqueConflictsMap;
 
+    private static volatile Boolean sUpsertSupported;
+
     //////////////////////////////////////////////////////////////////////////////////////
     // PUBLIC METHODS
     //////////////////////////////////////////////////////////////////////////////////////
@@ -137,6 +161,64 @@ public final class SQLiteUtils
         return null;
     }
 
+    /**
+     * @return true if the SQLite library understands INSERT ... ON CONFLICT DO UPDATE, added in
+     * SQLite 3.24.
+     */
+    public static boolean isUpsertSupported(SQLiteDatabase db)
+    {
+        Boolean supported = sUpsertSupported;
+        if (supported == null)
+        {
+            SQLiteStatement statement = db.compileStatement("SELECT sqlite_version()");
+            try
+            {
+                String[] version = statement.simpleQueryForString().split("\\.");
+                int      major   = Integer.parseInt(version[0]);
+                int      minor   = version.length > 1 ? Integer.parseInt(version[1]) : 0;
+                supported = major > 3 || (major == 3 && minor >= 24);
+            }
+            finally
+            {
+                statement.close();
+            }
+            sUpsertSupported = supported;
+        }
+
+        return supported;
+    }
+
+    /**
+     * Binds a value as returned by {@link android.content.ContentValues#get(String)}.
+     */
+    public static void bindObject(SQLiteStatement statement, int index, Object value)
+    {
+        if (value == null)
+        {
+            statement.bindNull(index);
+        }
+        else if (value instanceof Double || value instanceof Float)
+        {
+            statement.bindDouble(index, ((Number) value).doubleValue());
+        }
+        else if (value instanceof Number)
+        {
+            statement.bindLong(index, ((Number) value).longValue());
+        }
+        else if (value instanceof Boolean)
+        {
+            statement.bindLong(index, (Boolean) value ? 1 : 0);
+        }
+        else if (value instanceof byte[])
+        {
+            statement.bindBlob(index, (byte[]) value);
+        }
+        else
+        {
+            statement.bindString(index, value.toString());
+        }
+    }
+
     // Database creation
 
     public static ArrayList<String> createUniqueDefinition(TableInfo tableInfo)
@@ -311,6 +393,12 @@ public final class SQLiteUtils
         {
             sqLiteType = SQLiteType.INTEGER;
         }
+        else if (ReflectionUtils.isRef(type))
+        {
+            // Lazy references store the id like model columns and constrain it the same way.
+            type = ReflectionUtils.getRefType(field);
+            sqLiteType = SQLiteType.INTEGER;
+        }
         else if (ReflectionUtils.isSubclassOf(type, Enum.class))
         {
             sqLiteType = SQLiteType.TEXT;
@@ -431,8 +519,6 @@ public final class SQLiteUtils
 
         try
         {
-            Constructor<?> entityConstructor = type.getConstructor();
-
             if (cursor.moveToFirst())
             {
                 /**
@@ -440,18 +526,32 @@ public final class SQLiteUtils
                  * when the cursor have multiple columns with same name obtained from join tables.
                  */
                 List<String> columnsOrdered = new ArrayList<String>(Arrays.asList(cursor.getColumnNames()));
-                do
+                int          idIndex        = columnsOrdered.indexOf(idName);
+
+                // Column indexes only depend on the shape of the cursor, resolve them once for all rows.
+                ColumnPlan plan = Cache.getColumnPlan(type, cursor);
+
+                LoadedEntities references = LoadedEntities.open(true);
+                try
                 {
-                    Model entity = Cache.getEntity(type, cursor.getLong(columnsOrdered.indexOf(idName)));
-                    if (entity == null)
+                    prefetchReferences(database, tableInfo, cursor, columnsOrdered, references);
+                    do
                     {
-                        entity = (T) entityConstructor.newInstance();
+                        Model entity = Cache.getEntity(database, type, cursor.getLong(idIndex));
+                        if (entity == null)
+                        {
+                            entity = Cache.newInstance(type);
+                        }
+
+                        entity.loadFromCursor(database, cursor, plan);
+                        entities.add((T) entity);
                     }
-
-                    entity.loadFromCursor(database, cursor);
-                    entities.add((T) entity);
+                    while (cursor.moveToNext());
+                }
+                finally
+                {
+                    references.close();
                 }
-                while (cursor.moveToNext());
             }
 
         }
@@ -483,6 +583,143 @@ public final class SQLiteUtils
         return 0;
     }
 
+    /**
+     * Hydrates the model whose columns are selected as {@code prefix + name} along with another
+     * model. Rows without it are skipped and each entity is loaded once.
+     */
+    public static <T extends Model> List<T> processCursor(String database, Class<? extends Model> type, Cursor cursor, String prefix)
+    {
+        final List<T> entities = new ArrayList<T>();
+
+        try
+        {
+            if (cursor.moveToFirst())
+            {
+                ColumnPlan plan    = Cache.getColumnPlan(type, cursor, prefix);
+                int        idIndex = plan.idIndex;
+                if (idIndex == -1)
+                {
+                    return entities;
+                }
+
+                Set<Long> loaded = new HashSet<Long>();
+                do
+                {
+                    if (cursor.isNull(idIndex) || !loaded.add(cursor.getLong(idIndex)))
+                    {
+                        continue;
+                    }
+
+                    Model entity = Cache.getEntity(database, type, cursor.getLong(idIndex));
+                    if (entity == null)
+                    {
+                        entity = Cache.newInstance(type);
+                    }
+
+                    entity.loadFromCursor(database, cursor, plan);
+                    entities.add((T) entity);
+                }
+                while (cursor.moveToNext());
+            }
+        }
+        catch (Exception e)
+        {
+            Log.e("Failed to process cursor.", e);
+        }
+
+        return entities;
+    }
+
+    /**
+     * Loads the entities referenced by the rows of the cursor that are not cached yet, one query per
+     * referenced type and {@link #MAX_VARIABLE_NUMBER} ids instead of one query per row. Cached and
+     * loaded entities are kept in the scope the rows resolve their references from, so evicting
+     * them or not caching their table does not bring back a query per row. Leaves the cursor on
+     * its first row.
+     */
+    private static void prefetchReferences(String database, TableInfo tableInfo, Cursor cursor, List<String> columnsOrdered,
+                                           LoadedEntities scope)
+    {
+        Map<String, Class<? extends Model>> references = tableInfo.getReferences();
+        if (references.isEmpty() || cursor.getCount() < 2)
+        {
+            return;
+        }
+
+        List<Class<? extends Model>> types   = new ArrayList<Class<? extends Model>>(references.size());
+        List<Integer>                indexes = new ArrayList<Integer>(references.size());
+        for (Map.Entry<String, Class<? extends Model>> reference : references.entrySet())
+        {
+            int index = columnsOrdered.indexOf(reference.getKey());
+            if (index != -1)
+            {
+                types.add(reference.getValue());
+                indexes.add(index);
+            }
+        }
+        if (types.isEmpty())
+        {
+            return;
+        }
+
+        Map<Class<? extends Model>, Set<Long>> ids = new HashMap<Class<? extends Model>, Set<Long>>();
+        do
+        {
+            for (int i = 0; i < types.size(); i++)
+            {
+                int index = indexes.get(i);
+                if (cursor.isNull(index))
+                {
+                    continue;
+                }
+
+                Class<? extends Model> type = types.get(i);
+                long                   id   = cursor.getLong(index);
+                if (LoadedEntities.get(type, id) != null)
+                {
+                    continue;
+                }
+
+                Model cached = Cache.getEntity(database, type, id);
+                if (cached != null)
+                {
+                    scope.put(cached);
+                }
+                else
+                {
+                    Set<Long> typeIds = ids.get(type);
+                    if (typeIds == null)
+                    {
+                        typeIds = new LinkedHashSet<Long>();
+                        ids.put(type, typeIds);
+                    }
+                    typeIds.add(id);
+                }
+            }
+        }
+        while (cursor.moveToNext());
+        cursor.moveToFirst();
+
+        for (Map.Entry<Class<? extends Model>, Set<Long>> entry : ids.entrySet())
+        {
+            String         idName   = Cache.getTableInfo(entry.getKey()).getIdName();
+            Iterator<Long> iterator = entry.getValue().iterator();
+            while (iterator.hasNext())
+            {
+                List<Object> chunk = new ArrayList<Object>();
+                while (iterator.hasNext() && chunk.size() < MAX_VARIABLE_NUMBER)
+                {
+                    chunk.add(iterator.next());
+                }
+
+                StringBuilder clause = new StringBuilder(idName).append(" IN (");
+                appendPlaceholders(clause, chunk.size()).append(")");
+                List<Model> loaded = new Select().from(entry.getKey()).where(clause.toString(), chunk.toArray()).execute(database);
+                scope.putAll(loaded);
+            }
+        }
+    }
+
     public static List<String> lexSqlScript(String sqlScript)
     {
         ArrayList<String> sl       = new ArrayList<String>();
@@ -521,27 +758,111 @@ public final class SQLiteUtils
     }
 
     public static String createInsertStatement(String insertInto, TableInfo tableInfo)
+    {
+        return createInsertStatement(insertInto, tableInfo, 1);
+    }
+
+    /**
+     * Creates an insert of {@code rows} rows, the placeholders of a row follow the ones of the
+     * previous row in the order of {@link TableInfo#getColumnIndexes()}.
+     */
+    public static String createInsertStatement(String insertInto, TableInfo tableInfo, int rows)
     {
         StringBuilder stringBuilder = new StringBuilder(insertInto);
         stringBuilder
                 .append(tableInfo.getTableName())
                 .append(" (");
         appendColumns(stringBuilder, tableInfo.getColumnNames(), false)
-                .append(") VALUES (");
-        appendPlaceholders(stringBuilder, tableInfo.getFields().size());
-        stringBuilder.append(")");
+                .append(") VALUES ");
+        for (int i = 0; i < rows; i++)
+        {
+            stringBuilder.append(i == 0 ? "(" : ", (");
+            appendPlaceholders(stringBuilder, tableInfo.getFields().size());
+            stringBuilder.append(")");
+        }
         return stringBuilder.toString();
     }
 
+    /**
+     * Creates an insert that updates the columns of the row with the same
+     * {@link TableInfo#getUniqueKey()} instead of failing. Placeholders follow
+     * {@link TableInfo#getColumnIndexes()}.
+     */
+    public static String createUpsertStatement(TableInfo tableInfo)
+    {
+        String[]     key     = tableInfo.getUniqueKey();
+        List<String> columns = new ArrayList<String>(tableInfo.getColumnNames());
+        columns.remove(tableInfo.getIdName());
+        columns.removeAll(Arrays.asList(key));
+        if (columns.isEmpty())
+        {
+            // DO UPDATE needs a column to set, setting the key again leaves the row as it is.
+            columns.addAll(Arrays.asList(key));
+        }
+
+        StringBuilder stringBuilder = new StringBuilder(createInsertStatement("INSERT INTO ", tableInfo));
+        stringBuilder.append(" ON CONFLICT (");
+        for (int i = 0; i < key.length; i++)
+        {
+            appendIdentifier(stringBuilder, key[i]).append(i == key.length - 1 ? ")" : ", ");
+        }
+        stringBuilder.append(" DO UPDATE SET ");
+        Iterator<String> iterator = columns.iterator();
+        while (iterator.hasNext())
+        {
+            String column = iterator.next();
+            appendColumn(stringBuilder, column).append(" = excluded.");
+            appendIdentifier(stringBuilder, column).append(iterator.hasNext() ? ", " : "");
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Creates a query of the id of the row matching the {@link TableInfo#getUniqueKey()} bound in
+     * order.
+     */
+    public static String createUniqueKeyQuery(TableInfo tableInfo)
+    {
+        StringBuilder stringBuilder = new StringBuilder("SELECT ");
+        appendIdentifier(stringBuilder, tableInfo.getIdName())
+                .append(" FROM ")
+                .append(tableInfo.getTableName())
+                .append(" WHERE ");
+        String[] key = tableInfo.getUniqueKey();
+        for (int i = 0; i < key.length; i++)
+        {
+            appendIdentifier(stringBuilder, key[i]).append(i == key.length - 1 ? " = ?" : " = ? AND ");
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Creates an update of every column but the id, the id is bound to the last placeholder in the
+     * order of {@link TableInfo#getUpdateColumnIndexes()}.
+     */
     public static String createUpdateStatement(TableInfo tableInfo)
     {
+        List<String> columns = new ArrayList<String>(tableInfo.getColumnNames());
+        columns.remove(tableInfo.getIdName());
+
         StringBuilder stringBuilder = new StringBuilder("UPDATE ");
         stringBuilder
                 .append(tableInfo.getTableName())
                 .append(" SET ");
-        appendColumns(stringBuilder, tableInfo.getColumnNames(), true)
+        appendColumns(stringBuilder, columns, true)
+                .append(" =? WHERE ");
+        appendIdentifier(stringBuilder, tableInfo.getIdName())
+                .append(" = ?");
+        return stringBuilder.toString();
+    }
+
+    public static String createDeleteStatement(TableInfo tableInfo)
+    {
+        StringBuilder stringBuilder = new StringBuilder("DELETE FROM ");
+        stringBuilder
+                .append(tableInfo.getTableName())
                 .append(" WHERE ");
-        appendColumn(stringBuilder, tableInfo.getIdName())
+        appendIdentifier(stringBuilder, tableInfo.getIdName())
                 .append(" = ?");
         return stringBuilder.toString();
     }
@@ -562,6 +883,14 @@ public final class SQLiteUtils
         return stringBuilder.append("'").append(column).append("\'");
     }
 
+    /**
+     * Quotes a column where an expression may stand, a single quoted name would be a string there.
+     */
+    private static StringBuilder appendIdentifier(StringBuilder stringBuilder, String column)
+    {
+        return stringBuilder.append("\"").append(column).append("\"");
+    }
+
     private static StringBuilder appendPlaceholders(StringBuilder stringBuilder, int count)
     {
         for (int i = 0; i < count; ++i)
@@ -3,25 +3,32 @@ package com.activeandroid.sebbia.internal;
 import com.activeandroid.sebbia.IModel;
 import com.activeandroid.sebbia.annotation.Column;
 import com.activeandroid.sebbia.annotation.DoNotGenerate;
+import com.activeandroid.sebbia.annotation.Table;
 
 import java.io.IOException;
 import java.io.Writer;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.RoundEnvironment;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
 import javax.tools.Diagnostic.Kind;
 import javax.tools.JavaFileObject;
 
@@ -31,29 +38,66 @@ public final class AnnotationProcessor extends AbstractProcessor
     private static final String MODEL           = "model";
     private static final String CURSOR          = "cursor";
     private static final String CONTENT_VALUES  = "contentValues";
-    private static final String COLUMNS_ORDERED = "columnsOrdered";
+    private static final String DATABASE        = "database";
+    private static final String PLAN            = "plan";
+    private static final String INDEXES         = "indexes";
     private static final String STATEMENT       = "statement";
     private static final String COLUMNS         = "columns";
+    private static final String SIZE            = "size";
+
+    private static final String MODEL_CLASS           = "com.activeandroid.sebbia.Model";
+    private static final String TYPE_SERIALIZER_CLASS = "com.activeandroid.sebbia.serializer.TypeSerializer";
+    private static final String REF_CLASS             = "com.activeandroid.sebbia.model.Ref";
+
+    // Keep in sync with com.activeandroid.sebbia.internal.ModelRegistry.
+    private static final String REGISTRY_NAME    = "ActiveAndroidModelRegistry";
+    private static final String REGISTRY_PACKAGE = "com.activeandroid.sebbia.internal";
+    private static final String OPTION_PACKAGE   = "activeandroid.registryPackage";
 
     private RoundEnvironment env;
 
+    // Registry content collected over all rounds, keyed by binary name to keep the output stable.
+    private final Map<String, TypeElement> models      = new TreeMap<String, TypeElement>();
+    private final Map<String, String>      fillers     = new TreeMap<String, String>();
+    private final Map<String, TypeElement> serializers = new TreeMap<String, TypeElement>();
+    private int                            registered  = -1;
+
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env)
     {
         this.env = env;
-        if (annotations.size() > 0)
+        if (env.processingOver())
+        {
+            // Not reached in practice, a round that generates fillers is followed by another one.
+            generateRegistry();
+        }
+        else
         {
+            int generated = fillers.size();
             parseColumns();
+            collectTypes(env.getRootElements());
+
+            // A source created in the last round is not compiled with the others, the registry is
+            // written in the first round that does not lead to another one of ours.
+            if (fillers.size() == generated)
+            {
+                generateRegistry();
+            }
         }
-        return true;
+        // Claims every annotation type only to see all classes, leave them to other processors.
+        return false;
     }
 
     @Override
     public Set<String> getSupportedAnnotationTypes()
     {
-        Set<String> supportedTypes = new HashSet<String>();
-        supportedTypes.add(Column.class.getCanonicalName());
-        return supportedTypes;
+        return Collections.singleton("*");
+    }
+
+    @Override
+    public Set<String> getSupportedOptions()
+    {
+        return Collections.singleton(OPTION_PACKAGE);
     }
 
     @Override
@@ -99,7 +143,7 @@ public final class AnnotationProcessor extends AbstractProcessor
             Set<VariableElement> columnsElements = tables.get(tableElement);
             if (columnsElements == null)
             {
-                columnsElements = new HashSet<VariableElement>();
+                columnsElements = new LinkedHashSet<VariableElement>();
                 tables.put(tableElement, columnsElements);
             }
 
@@ -107,6 +151,23 @@ public final class AnnotationProcessor extends AbstractProcessor
 
         }
 
+        // Tables without columns of their own still get a filler for the generated factory.
+        TypeMirror modelType = getType(MODEL_CLASS);
+        for (Element element : env.getElementsAnnotatedWith(Table.class))
+        {
+            if (modelType == null || element.getKind() != ElementKind.CLASS || tables.containsKey(element))
+            {
+                continue;
+            }
+
+            TypeElement tableElement = (TypeElement) element;
+            if (!tableElement.getModifiers().contains(Modifier.ABSTRACT) && !tableElement.getModifiers().contains(Modifier.PRIVATE)
+                    && !isDoNotGenerate(tableElement) && processingEnv.getTypeUtils().isSubtype(tableElement.asType(), modelType))
+            {
+                tables.put(tableElement, new LinkedHashSet<VariableElement>());
+            }
+        }
+
         for (TypeElement table : tables.keySet())
         {
             generate(table, tables.get(table));
@@ -120,6 +181,7 @@ public final class AnnotationProcessor extends AbstractProcessor
         String packageName     = processingEnv.getElementUtils().getPackageOf(tableElement).getQualifiedName().toString();
         String className       = tableElement.getQualifiedName().toString();
         String fillerClassName = getClassName(tableElement, packageName) + SUFFIX;
+        fillers.put(getBinaryName(tableElement), packageName + "." + fillerClassName);
 
         try
         {
@@ -129,19 +191,32 @@ public final class AnnotationProcessor extends AbstractProcessor
             writer.write("package " + packageName + ";\n\n");
 
             writer.write("import android.database.sqlite.SQLiteStatement;\n");
-            writer.write("import java.util.ArrayList;\n");
-            writer.write("import java.util.Arrays;\n");
-            writer.write("import java.util.List;\n\n");
             writer.write("import java.util.Map;\n\n");
 
+            writer.write("import com.activeandroid.sebbia.internal.ColumnPlan;\n");
             writer.write("import com.activeandroid.sebbia.internal.ModelHelper;\n");
             writer.write("import com.activeandroid.sebbia.internal.ModelFiller;\n");
+            writer.write("import com.activeandroid.sebbia.serializer.TypeSerializer;\n");
             writer.write("\n");
             writer.write("public class " + fillerClassName + " extends ModelFiller {\n\n");
-            writer.write("  public void loadFromCursor(com.activeandroid.sebbia.Model genericModel, android.database.Cursor " + CURSOR + ") {\n");
+            if (isInstantiable(tableElement))
+            {
+                writer.write("  public com.activeandroid.sebbia.Model newInstance() {\n");
+                writer.write("    return new " + className + "();\n");
+                writer.write("  }\n\n");
+            }
+
+            writer.write(getSerializersCode(columns));
+
+            writer.write("  private static final String[] COLUMN_NAMES = {" + getColumnNamesCode(columns) + "};\n\n");
+            writer.write("  public String[] getColumnNames() {\n");
+            writer.write("    return COLUMN_NAMES;\n");
+            writer.write("  }\n\n");
+
+            writer.write("  public void loadFromCursor(String " + DATABASE + ", com.activeandroid.sebbia.Model genericModel, android.database.Cursor " + CURSOR + ", ColumnPlan " + PLAN + ") {\n");
             writer.write("    if (superModelFiller != null)\n");
-            writer.write("       superModelFiller.loadFromCursor(genericModel, " + CURSOR + ");\n");
-            writer.write("    List<String> " + COLUMNS_ORDERED + " = new ArrayList<String>(Arrays.asList(" + CURSOR + ".getColumnNames()));\n");
+            writer.write("       superModelFiller.loadFromCursor(" + DATABASE + ", genericModel, " + CURSOR + ", " + PLAN + ".superPlan);\n");
+            writer.write("    int[] " + INDEXES + " = " + PLAN + ".indexes;\n");
             writer.write("    " + className + " " + MODEL + " = (" + className + ") genericModel;\n");
             writer.write(getLoadFromCursorCode(columns));
             writer.write("  }\n\n");
@@ -161,6 +236,13 @@ public final class AnnotationProcessor extends AbstractProcessor
             writer.write(getBindStatementCode(columns));
             writer.write("  }\n");
 
+            writer.write("  public int estimateSize(com.activeandroid.sebbia.Model genericModel) {\n");
+            writer.write("    int " + SIZE + " = superModelFiller != null ? superModelFiller.estimateSize(genericModel) : MODEL_SIZE;\n");
+            writer.write("    " + className + " " + MODEL + " = (" + className + ") genericModel;\n");
+            writer.write(getEstimateSizeCode(columns));
+            writer.write("    return " + SIZE + ";\n");
+            writer.write("  }\n");
+
             writer.write("}");
             writer.flush();
             writer.close();
@@ -171,27 +253,266 @@ public final class AnnotationProcessor extends AbstractProcessor
         }
     }
 
-    private String getLoadFromCursorCode(Set<VariableElement> columns)
+    /**
+     * Collects every concrete model and type serializer, with or without annotations, the same
+     * classes a scan of the application would find.
+     */
+    private void collectTypes(Collection<? extends Element> elements)
     {
-        StringBuilder stringBuilder = new StringBuilder();
+        TypeMirror modelType      = getType(MODEL_CLASS);
+        TypeMirror serializerType = getType(TYPE_SERIALIZER_CLASS);
+        if (modelType == null && serializerType == null)
+        {
+            return;
+        }
+
+        for (Element element : elements)
+        {
+            if (element.getKind() != ElementKind.CLASS)
+            {
+                continue;
+            }
+
+            TypeElement typeElement = (TypeElement) element;
+            if (!typeElement.getModifiers().contains(Modifier.ABSTRACT))
+            {
+                TypeMirror type = processingEnv.getTypeUtils().erasure(typeElement.asType());
+                if (modelType != null && processingEnv.getTypeUtils().isSubtype(type, modelType))
+                {
+                    models.put(getBinaryName(typeElement), typeElement);
+                }
+                else if (serializerType != null && processingEnv.getTypeUtils().isSubtype(type, serializerType))
+                {
+                    serializers.put(getBinaryName(typeElement), typeElement);
+                }
+            }
+
+            collectTypes(typeElement.getEnclosedElements());
+        }
+    }
+
+    private void generateRegistry()
+    {
+        if (registered != -1)
+        {
+            if (registered != models.size() + serializers.size())
+            {
+                processingEnv.getMessager().printMessage(Kind.ERROR,
+                        "Models or type serializers generated after " + REGISTRY_NAME + " are missing from it");
+                registered = models.size() + serializers.size();
+            }
+            return;
+        }
+        if (models.isEmpty() && serializers.isEmpty())
+        {
+            return;
+        }
+        registered = models.size() + serializers.size();
+
+        String packageName = processingEnv.getOptions().get(OPTION_PACKAGE);
+        if (packageName == null || packageName.isEmpty())
+        {
+            packageName = REGISTRY_PACKAGE;
+        }
+
+        try
+        {
+            JavaFileObject jfo = processingEnv.getFiler().createSourceFile(packageName + "." + REGISTRY_NAME);
+            Writer writer = jfo.openWriter();
+            writer.write("//Generated by ActiveAndroid. Do not modify\n");
+            writer.write("package " + packageName + ";\n\n");
+
+            writer.write("import java.util.ArrayList;\n");
+            writer.write("import java.util.List;\n\n");
+
+            writer.write("import com.activeandroid.sebbia.Model;\n");
+            writer.write("import com.activeandroid.sebbia.internal.ModelFiller;\n");
+            writer.write("import com.activeandroid.sebbia.internal.ModelRegistry;\n");
+            writer.write("import com.activeandroid.sebbia.serializer.TypeSerializer;\n");
+            writer.write("\n");
+            writer.write("@SuppressWarnings(\"unchecked\")\n");
+            writer.write("public class " + REGISTRY_NAME + " extends ModelRegistry {\n\n");
+
+            writer.write("  public List<Class<? extends Model>> getModelClasses() {\n");
+            writer.write("    List<Class<? extends Model>> classes = new ArrayList<Class<? extends Model>>(" + models.size() + ");\n");
+            for (Map.Entry<String, TypeElement> model : models.entrySet())
+            {
+                writer.write("    classes.add(" + getClassLiteral(model.getValue(), model.getKey(), "Model") + ");\n");
+            }
+            writer.write("    return classes;\n");
+            writer.write("  }\n\n");
+
+            writer.write("  public List<Class<? extends TypeSerializer>> getTypeSerializers() {\n");
+            writer.write("    List<Class<? extends TypeSerializer>> classes = new ArrayList<Class<? extends TypeSerializer>>(" + serializers.size() + ");\n");
+            for (Map.Entry<String, TypeElement> serializer : serializers.entrySet())
+            {
+                writer.write("    classes.add(" + getClassLiteral(serializer.getValue(), serializer.getKey(), "TypeSerializer") + ");\n");
+            }
+            writer.write("    return classes;\n");
+            writer.write("  }\n\n");
+
+            writer.write("  public ModelFiller createFiller(Class<? extends Model> type) {\n");
+            writer.write("    switch (type.getName()) {\n");
+            for (Map.Entry<String, String> filler : fillers.entrySet())
+            {
+                writer.write("      case \"" + filler.getKey() + "\": return new " + filler.getValue() + "();\n");
+            }
+            writer.write("      default: return null;\n");
+            writer.write("    }\n");
+            writer.write("  }\n\n");
+
+            writer.write("  private static Class<?> forName(String name) {\n");
+            writer.write("    try {\n");
+            writer.write("      return Class.forName(name);\n");
+            writer.write("    } catch (ClassNotFoundException e) {\n");
+            writer.write("      throw new RuntimeException(e);\n");
+            writer.write("    }\n");
+            writer.write("  }\n");
+
+            writer.write("}");
+            writer.flush();
+            writer.close();
+        }
+        catch (IOException exception)
+        {
+            processingEnv.getMessager().printMessage(Kind.ERROR, exception.getMessage());
+        }
+    }
+
+    /**
+     * Classes that are not visible from the registry package are looked up by name instead.
+     */
+    private String getClassLiteral(TypeElement type, String binaryName, String bound)
+    {
+        if (isPublic(type))
+        {
+            return type.getQualifiedName() + ".class";
+        }
+        return "(Class<? extends " + bound + ">) forName(\"" + binaryName + "\")";
+    }
+
+    private static boolean isPublic(TypeElement type)
+    {
+        Element element = type;
+        while (element instanceof TypeElement)
+        {
+            if (!element.getModifiers().contains(Modifier.PUBLIC))
+            {
+                return false;
+            }
+            if (((TypeElement) element).getNestingKind() == NestingKind.MEMBER && !element.getModifiers().contains(Modifier.STATIC))
+            {
+                return false;
+            }
+            element = element.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private TypeMirror getType(String className)
+    {
+        TypeElement element = processingEnv.getElementUtils().getTypeElement(className);
+        if (element == null)
+        {
+            return null;
+        }
+        return processingEnv.getTypeUtils().erasure(element.asType());
+    }
+
+    private String getBinaryName(TypeElement type)
+    {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
 
-        stringBuilder.append("int index = -1;\n");
+    private String getColumnName(VariableElement column)
+    {
+        String fieldName = column.getAnnotation(Column.class).name();
+        if (fieldName == null || fieldName.isEmpty())
+        {
+            fieldName = column.getSimpleName().toString();
+        }
+        return fieldName;
+    }
+
+    private String getColumnNamesCode(Set<VariableElement> columns)
+    {
+        StringBuilder stringBuilder = new StringBuilder();
         for (VariableElement column : columns)
         {
-            Column annotation = column.getAnnotation(Column.class);
+            if (stringBuilder.length() > 0)
+            {
+                stringBuilder.append(", ");
+            }
+            stringBuilder.append("\"" + getColumnName(column) + "\"");
+        }
+        return stringBuilder.toString();
+    }
 
-            String fieldName = annotation.name();
+    /**
+     * Columns that are not stored natively go through a type serializer, resolved once per filler.
+     */
+    private boolean isSerializerColumn(TypeMirror typeMirror)
+    {
+        if (isRef(typeMirror))
+        {
+            return false;
+        }
 
-            if (fieldName == null || fieldName.isEmpty())
+        Class<?>[] nativeTypes = {
+                Integer.class, int.class, Byte.class, byte.class, Short.class, short.class, Long.class, long.class,
+                Float.class, float.class, Double.class, double.class, Boolean.class, boolean.class,
+                Character.class, char.class, String.class, Byte[].class, byte[].class
+        };
+        for (Class<?> nativeType : nativeTypes)
+        {
+            if (isTypeOf(typeMirror, nativeType))
             {
-                fieldName = column.getSimpleName().toString();
+                return false;
             }
+        }
+        return true;
+    }
 
+    private static String getSerializerField(VariableElement column)
+    {
+        return column.getSimpleName() + "Serializer";
+    }
+
+    private String getSerializersCode(Set<VariableElement> columns)
+    {
+        StringBuilder fields = new StringBuilder();
+        StringBuilder binds  = new StringBuilder();
+        for (VariableElement column : columns)
+        {
+            TypeMirror typeMirror = column.asType();
+            if (isSerializerColumn(typeMirror))
+            {
+                fields.append("  private TypeSerializer " + getSerializerField(column) + ";\n");
+                binds.append("    " + getSerializerField(column) + " = com.activeandroid.sebbia.Cache.getParserForType(" + getClassString(typeMirror, typeMirror instanceof DeclaredType) + ");\n");
+            }
+        }
+
+        if (fields.length() == 0)
+        {
+            return "";
+        }
+        return fields + "\n  public void bindSerializers() {\n" + binds + "  }\n\n";
+    }
+
+    private String getLoadFromCursorCode(Set<VariableElement> columns)
+    {
+        StringBuilder stringBuilder = new StringBuilder();
+
+        stringBuilder.append("    int index = -1;\n");
+        int position = 0;
+        for (VariableElement column : columns)
+        {
             TypeMirror typeMirror = column.asType();
             String type = getClassString(typeMirror, typeMirror instanceof DeclaredType);
-            String getColumnIndex = "index"; // COLUMNS_ORDERED + ".indexOf(\"" + fieldName + "\")";
+            String getColumnIndex = "index";
 
-            String setValue = "if (-1 != (index = " + COLUMNS_ORDERED + ".indexOf(\"" + fieldName + "\"))) " + MODEL + "." + column.getSimpleName() + " = " + CURSOR;
+            String hasColumn = "    if (-1 != (index = " + INDEXES + "[" + position++ + "])) ";
+            String setValue = hasColumn + MODEL + "." + column.getSimpleName() + " = " + CURSOR;
 
             if (isTypeOf(typeMirror, Integer.class) || isTypeOf(typeMirror, int.class))
             {
@@ -233,16 +554,22 @@ public final class AnnotationProcessor extends AbstractProcessor
             {
                 stringBuilder.append(setValue + ".getBlob(" + getColumnIndex + ");\n");
             }
+            else if (isRef(typeMirror))
+            {
+                stringBuilder.append(hasColumn + MODEL + "." + column.getSimpleName() + " = " + CURSOR + ".isNull(" + getColumnIndex + ") ? null : "
+                        + REF_CLASS + ".of(" + DATABASE + ", " + getRefClassString(typeMirror) + ", " + CURSOR + ".getLong(" + getColumnIndex + "));\n");
+            }
             else
             {
                 processingEnv.getMessager().printMessage(Kind.NOTE, "Guessing what type is at " + typeMirror.toString(), null);
-                stringBuilder.append("    if (ModelHelper.isSerializable(" + type + ")) {\n");
-                stringBuilder.append("      " + MODEL + "." + column.getSimpleName() + " = (" + typeMirror.toString() + ") ModelHelper.getSerializable(cursor, " + type + ", " + getColumnIndex + ");\n");
-                stringBuilder.append("    } else {\n");
-                stringBuilder.append("      " + MODEL + "." + column.getSimpleName() + " = ");
+                stringBuilder.append(hasColumn + "{\n");
+                stringBuilder.append("      if (" + getSerializerField(column) + " != null) {\n");
+                stringBuilder.append("        " + MODEL + "." + column.getSimpleName() + " = (" + typeMirror.toString() + ") ModelHelper.getSerializable(cursor, " + getSerializerField(column) + ", " + getColumnIndex + ");\n");
+                stringBuilder.append("      } else {\n");
+                stringBuilder.append("        " + MODEL + "." + column.getSimpleName() + " = ");
                 if (isTypeOf(typeMirror, IModel.class))
                 {
-                    stringBuilder.append("(" + typeMirror.toString() + ") ModelHelper.getModel(cursor, " + type + ", " + getColumnIndex + ");\n");
+                    stringBuilder.append(CURSOR + ".isNull(" + getColumnIndex + ") ? null : (" + typeMirror.toString() + ") ModelHelper.getModel(" + DATABASE + ", cursor, " + type + ", " + getColumnIndex + ");\n");
                 }
                 else if (isTypeOf(typeMirror, Enum.class))
                 {
@@ -253,6 +580,7 @@ public final class AnnotationProcessor extends AbstractProcessor
                     stringBuilder.append(" null;\n");
                 }
 
+                stringBuilder.append("      }\n");
                 stringBuilder.append("    }\n");
             }
         }
@@ -328,10 +656,14 @@ public final class AnnotationProcessor extends AbstractProcessor
             {
                 stringBuilder.append(putValue + ");\n");
             }
+            else if (isRef(typeMirror))
+            {
+                stringBuilder.append(putValue + ".getId());\n");
+            }
             else
             {
-                stringBuilder.append(emptySpace + "if (ModelHelper.isSerializable(" + type + ")) {\n");
-                stringBuilder.append(emptySpace + "  ModelHelper.setSerializable(" + CONTENT_VALUES + ", " + type + ", " + getValue + ", \"" + fieldName + "\");\n");
+                stringBuilder.append(emptySpace + "if (" + getSerializerField(column) + " != null) {\n");
+                stringBuilder.append(emptySpace + "  ModelHelper.setSerializable(" + CONTENT_VALUES + ", " + getSerializerField(column) + ", " + getValue + ", \"" + fieldName + "\");\n");
                 stringBuilder.append(emptySpace + "} else {\n");
                 stringBuilder.append(emptySpace + "  " + CONTENT_VALUES + ".");
                 if (isTypeOf(typeMirror, IModel.class))
@@ -432,14 +764,20 @@ public final class AnnotationProcessor extends AbstractProcessor
             {
                 stringBuilder.append(bind + "Blob(" + columnIndex + ", " + getValue + ");\n");
             }
+            else if (isRef(typeMirror))
+            {
+                // The id of a referenced entity that is not saved yet stays unbound, which is NULL.
+                stringBuilder.append(emptySpace + "if (" + getValue + ".getId() != null)\n");
+                stringBuilder.append("  " + bind + "Long(" + columnIndex + ", " + getValue + ".getId());\n");
+            }
             else
             {
                 boolean isModel = isTypeOf(typeMirror, IModel.class);
                 boolean isEnum = isTypeOf(typeMirror, Enum.class);
                 if (isModel || isEnum)
                 {
-                    stringBuilder.append(emptySpace + "if (ModelHelper.isSerializable(" + type + ")) {\n");
-                    stringBuilder.append(emptySpace + "  ModelHelper.setSerializable(" + STATEMENT + ", " + COLUMNS + ", " + type + ", " + getValue + ", \"" + fieldName + "\");\n");
+                    stringBuilder.append(emptySpace + "if (" + getSerializerField(column) + " != null) {\n");
+                    stringBuilder.append(emptySpace + "  ModelHelper.setSerializable(" + STATEMENT + ", " + COLUMNS + ", " + getSerializerField(column) + ", " + getValue + ", \"" + fieldName + "\");\n");
                     stringBuilder.append(emptySpace + "} else {\n");
                     stringBuilder.append(emptySpace + "  " + STATEMENT + ".bind");
                     if (isModel)
@@ -454,8 +792,8 @@ public final class AnnotationProcessor extends AbstractProcessor
                 }
                 else
                 {
-                    stringBuilder.append(emptySpace + "if (ModelHelper.isSerializable(" + type + "))\n");
-                    stringBuilder.append(emptySpace + "  ModelHelper.setSerializable(" + STATEMENT + ", " + COLUMNS + ", " + type + ", " + getValue + ", \"" + fieldName + "\");\n");
+                    stringBuilder.append(emptySpace + "if (" + getSerializerField(column) + " != null)\n");
+                    stringBuilder.append(emptySpace + "  ModelHelper.setSerializable(" + STATEMENT + ", " + COLUMNS + ", " + getSerializerField(column) + ", " + getValue + ", \"" + fieldName + "\");\n");
                 }
             }
             if (notPrimitiveType)
@@ -466,6 +804,50 @@ public final class AnnotationProcessor extends AbstractProcessor
         return stringBuilder.toString();
     }
 
+    private String getEstimateSizeCode(Set<VariableElement> columns)
+    {
+        StringBuilder stringBuilder = new StringBuilder();
+
+        for (VariableElement column : columns)
+        {
+            TypeMirror typeMirror = column.asType();
+            String getValue = MODEL + "." + column.getSimpleName();
+            String addSize = "    " + SIZE + " += ";
+
+            if (isTypeOf(typeMirror, long.class) || isTypeOf(typeMirror, double.class))
+            {
+                stringBuilder.append(addSize + "8;\n");
+            }
+            else if (isTypeOf(typeMirror, int.class) || isTypeOf(typeMirror, float.class))
+            {
+                stringBuilder.append(addSize + "4;\n");
+            }
+            else if (isTypeOf(typeMirror, short.class) || isTypeOf(typeMirror, char.class))
+            {
+                stringBuilder.append(addSize + "2;\n");
+            }
+            else if (isTypeOf(typeMirror, byte.class) || isTypeOf(typeMirror, boolean.class))
+            {
+                stringBuilder.append(addSize + "1;\n");
+            }
+            else if (isTypeOf(typeMirror, String.class) || isTypeOf(typeMirror, byte[].class) || isTypeOf(typeMirror, Byte[].class))
+            {
+                stringBuilder.append(addSize + "4 + ModelHelper.estimateSize(" + getValue + ");\n");
+            }
+            else if (isTypeOf(typeMirror, IModel.class) || isTypeOf(typeMirror, Enum.class))
+            {
+                // Referenced entities are weighed by their own table, enum constants are shared.
+                stringBuilder.append(addSize + "4;\n");
+            }
+            else
+            {
+                // Boxed primitives and serializable values such as dates.
+                stringBuilder.append(addSize + "4 + (" + getValue + " != null ? 24 : 0);\n");
+            }
+        }
+        return stringBuilder.toString();
+    }
+
     private String getClassString(TypeMirror typeMirror, boolean notPrimitiveType)
     {
         String type = typeMirror.toString() + ".class";
@@ -481,6 +863,27 @@ public final class AnnotationProcessor extends AbstractProcessor
         return type;
     }
 
+    /**
+     * Whether the column is a lazy {@code Ref<T>}, only its id is read and written.
+     */
+    private boolean isRef(TypeMirror typeMirror)
+    {
+        return typeMirror instanceof DeclaredType
+                && ((TypeElement) ((DeclaredType) typeMirror).asElement()).getQualifiedName().contentEquals(REF_CLASS);
+    }
+
+    private static boolean isRefTypeDeclared(DeclaredType refType)
+    {
+        List<? extends TypeMirror> typeArguments = refType.getTypeArguments();
+        return !typeArguments.isEmpty() && typeArguments.get(0) instanceof DeclaredType;
+    }
+
+    private String getRefClassString(TypeMirror typeMirror)
+    {
+        TypeMirror referenced = ((DeclaredType) typeMirror).getTypeArguments().get(0);
+        return getClassString(referenced, referenced instanceof DeclaredType);
+    }
+
     private boolean isTypeOf(TypeMirror typeMirror, Class<?> type)
     {
         if (type.getCanonicalName().equals(typeMirror.toString()))
@@ -511,6 +914,14 @@ public final class AnnotationProcessor extends AbstractProcessor
         {
             return true;
         }
+
+        for (TypeMirror interfaceType : typeElement.getInterfaces())
+        {
+            if (isTypeOf(interfaceType, type))
+            {
+                return true;
+            }
+        }
         return false;
     }
 
@@ -536,6 +947,46 @@ public final class AnnotationProcessor extends AbstractProcessor
         return true;
     }
 
+    private boolean isDoNotGenerate(TypeElement type)
+    {
+        if (type.getAnnotation(DoNotGenerate.class) != null)
+        {
+            return true;
+        }
+
+        TypeMirror superType = type.getSuperclass();
+        if (superType instanceof DeclaredType)
+        {
+            return isDoNotGenerate((TypeElement) ((DeclaredType) superType).asElement());
+        }
+        return false;
+    }
+
+    /**
+     * Whether the filler can create the model with a plain constructor call.
+     */
+    private boolean isInstantiable(TypeElement table)
+    {
+        if (table.getModifiers().contains(Modifier.ABSTRACT))
+        {
+            return false;
+        }
+
+        if (table.getNestingKind() == NestingKind.MEMBER && !table.getModifiers().contains(Modifier.STATIC))
+        {
+            return false;
+        }
+
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(table.getEnclosedElements()))
+        {
+            if (constructor.getParameters().isEmpty())
+            {
+                return !constructor.getModifiers().contains(Modifier.PRIVATE);
+            }
+        }
+        return false;
+    }
+
     private boolean checkColumnModifiers(VariableElement column)
     {
 
@@ -557,6 +1008,12 @@ public final class AnnotationProcessor extends AbstractProcessor
             return false;
         }
 
+        if (isRef(column.asType()) && !isRefTypeDeclared((DeclaredType) column.asType()))
+        {
+            error("Ref columns must name the referenced model, as in Ref<Customer>", column);
+            return false;
+        }
+
         return true;
     }
 